@@ -0,0 +1,27 @@
+#!/bin/bash
+# Micro-benchmarks for the request path (no database needed).
+#
+#   ./bench.sh                                   # RequestPathBenchmark, all cases
+#   ./bench.sh --filter json --iterations 10     # only cases containing "json"
+#   ./bench.sh JsonEncoderBenchmark --seconds 2  # another benchmark main
+#
+# Options: --warmup N, --iterations N, --seconds S, --filter TEXT
+
+set -e
+cd "$(dirname "$0")"
+
+BENCH=RequestPathBenchmark
+if [ $# -gt 0 ] && [[ "$1" != --* ]]; then
+    BENCH="$1"
+    shift
+fi
+
+OUT="${TMPDIR:-/tmp}/gatekeeper-bench"
+rm -rf "$OUT"
+mkdir -p "$OUT"
+
+echo "Compiling..."
+javac -encoding UTF-8 -cp "lib/*" -d "$OUT" $(find src -name '*.java')
+
+# Fixed heap and a single GC so runs are comparable
+java -Xms512m -Xmx512m -XX:+UseParallelGC -cp "$OUT:lib/*" "benchmarks.$BENCH" "$@"
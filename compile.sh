@@ -13,17 +13,29 @@ javac -cp ".;lib/*" -d bin src/models/*.java
 echo "Compiling config..."
 javac -cp ".;lib/*;bin" -d bin src/config/*.java
 
+echo "Compiling metrics..."
+javac -cp ".;lib/*;bin" -d bin src/metrics/*.java
+
 echo "Compiling dao..."
 javac -cp ".;lib/*;bin" -d bin src/dao/*.java
 
+echo "Compiling json..."
+javac -cp ".;lib/*;bin" -d bin src/json/*.java
+
+echo "Compiling inventory..."
+javac -cp ".;lib/*;bin" -d bin src/inventory/*.java
+
 echo "Compiling services..."
 javac -cp ".;lib/*;bin" -d bin src/services/*.java
 
+echo "Compiling server..."
+javac -cp ".;lib/*;bin" -d bin src/server/*.java
+
 echo "Compiling controllers..."
 javac -cp ".;lib/*;bin" -d bin src/controllers/*.java
 
-echo "Compiling server..."
-javac -cp ".;lib/*;bin" -d bin src/server/*.java
+echo "Compiling benchmarks..."
+javac -cp ".;lib/*;bin" -d bin src/benchmarks/*.java
 
 echo "Compiling Main..."
 javac -cp ".;lib/*;bin" -d bin src/Main.java
@@ -11,7 +11,8 @@ CREATE TABLE users (
     phone VARCHAR(20),
     role ENUM('ORGANIZER', 'CUSTOMER') NOT NULL,
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
-    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
+    -- Millisecond precision: part of the ETag, so two changes must not share a value
+    updated_at TIMESTAMP(3) DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3)
 );
 
 -- Table: events
@@ -26,8 +27,9 @@ CREATE TABLE events (
     available_tickets INT NOT NULL,
     ticket_price DECIMAL(10, 2) NOT NULL,
     status ENUM('ACTIVE', 'CLOSED', 'CANCELLED') DEFAULT 'ACTIVE',
+    booking_strategy VARCHAR(20) NOT NULL DEFAULT 'PESSIMISTIC',
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
-    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP(3) DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3),
     FOREIGN KEY (organizer_id) REFERENCES users(user_id),
     CHECK (available_tickets >= 0),
     CHECK (available_tickets <= total_capacity)
@@ -52,12 +54,31 @@ CREATE TABLE bookings (
     CHECK (quantity > 0)
 );
 
+-- Table: event_inventory_buckets
+-- Used by events with booking_strategy = 'BUCKETED': the event's tickets are
+-- split over several rows so concurrent bookings lock different rows.
+CREATE TABLE event_inventory_buckets (
+    event_id INT NOT NULL,
+    bucket_no INT NOT NULL,
+    available_tickets INT NOT NULL,
+    PRIMARY KEY (event_id, bucket_no),
+    FOREIGN KEY (event_id) REFERENCES events(event_id) ON DELETE CASCADE,
+    CHECK (available_tickets >= 0)
+);
+
 -- Indexes for performance
 CREATE INDEX idx_events_organizer ON events(organizer_id);
 CREATE INDEX idx_events_status ON events(status);
-CREATE INDEX idx_bookings_user ON bookings(user_id);
-CREATE INDEX idx_bookings_event ON bookings(event_id);
+-- Keyset pagination: (filter, sort key, id) matches each list query's ORDER BY
+CREATE INDEX idx_bookings_created ON bookings(created_at, booking_id);
+CREATE INDEX idx_bookings_user ON bookings(user_id, created_at, booking_id);
+CREATE INDEX idx_bookings_event ON bookings(event_id, created_at, booking_id);
+-- The trailing version columns let list ETags be computed from the index alone
+CREATE INDEX idx_events_date ON events(event_date, event_id, updated_at, available_tickets);
+CREATE INDEX idx_users_created ON users(created_at, user_id, updated_at);
 CREATE INDEX idx_bookings_code ON bookings(booking_code);
+-- Hold expiry rebuilds its timing wheel from this range on startup
+CREATE INDEX idx_bookings_status ON bookings(status, booking_id);
 
 -- Sample Data
 INSERT INTO users (username, email, password, full_name, phone, role) VALUES
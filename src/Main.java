@@ -1,31 +1,46 @@
-import com.sun.net.httpserver.HttpServer;
+import config.AppConfig;
+import config.DatabaseConfig;
 import controllers.BookingController;
 import controllers.EventController;
+import controllers.MetricsController;
 import controllers.UserController;
+import dao.EventCache;
+import inventory.HoldExpiry;
+import inventory.InventoryEngine;
+import server.AvailabilityPublisher;
+import server.HttpServer;
+import server.RequestExecutors;
 
 import java.io.IOException;
-import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public class Main {
     public static void main(String[] args) {
         try {
-            int port = 8080;
-            HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
+            int port = AppConfig.getInt("SERVER_PORT", 8080);
+            ExecutorService executor = RequestExecutors.create();
+            HttpServer server = new HttpServer(port, AppConfig.getInt("SERVER_BACKLOG", 0), executor);
             
             // Register all controllers
-            server.createContext("/api/bookings", new BookingController());
-            server.createContext("/api/events", new EventController());
-            server.createContext("/api/users", new UserController());
+            new BookingController().register(server);
+            new EventController().register(server);
+            new UserController().register(server);
+            new MetricsController().register(server);
             
-            server.setExecutor(null);
+            // Rebuilds pending holds from the database before bookings come in
+            HoldExpiry.start();
             server.start();
             
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> shutdown(server, executor), "shutdown"));
+            
             System.out.println();
             System.out.println("  Event Ticketing Platform - Backend API");
             System.out.println();
             System.out.println();
             System.out.println("✓ Server started on port: " + port);
             System.out.println("✓ API Base URL: http://localhost:" + port);
+            System.out.println("✓ Request executor: " + RequestExecutors.describe(executor));
             System.out.println();
             System.out.println();
             System.out.println("  BOOKINGS ENDPOINTS:");
@@ -35,6 +50,7 @@ public class Main {
             System.out.println("  GET    /api/bookings/user/{id}    - Get user bookings");
             System.out.println("  GET    /api/bookings/event/{id}   - Get event bookings");
             System.out.println("  POST   /api/bookings              - Create booking");
+            System.out.println("  POST   /api/bookings/batch        - Book several events at once");
             System.out.println("  PUT    /api/bookings/{id}/confirm - Confirm booking");
             System.out.println("  PUT    /api/bookings/{id}/cancel  - Cancel booking");
             System.out.println("  DELETE /api/bookings/{id}         - Delete booking");
@@ -47,6 +63,8 @@ public class Main {
             System.out.println("  POST   /api/events                - Create event");
             System.out.println("  PUT    /api/events/{id}           - Update event");
             System.out.println("  DELETE /api/events/{id}           - Delete event");
+            System.out.println("  PUT    /api/events/{id}/waiting-room - Open a waiting room (GET status, DELETE close)");
+            System.out.println("  GET    /api/events/{id}/availability/stream - Live availability (SSE)");
             System.out.println();
             System.out.println();
             System.out.println("  USERS ENDPOINTS:");
@@ -58,6 +76,9 @@ public class Main {
             System.out.println("  DELETE /api/users/{id}            - Delete user");
             System.out.println();
             System.out.println();
+            System.out.println("  GET    /api/metrics               - Prometheus metrics");
+            System.out.println();
+            System.out.println();
             System.out.println("[INFO] Press Ctrl+C to stop the server");
             System.out.println();
             
@@ -66,4 +87,35 @@ public class Main {
             e.printStackTrace();
         }
     }
+    
+    private static void shutdown(HttpServer server, ExecutorService executor) {
+        int graceSeconds = AppConfig.getInt("SERVER_SHUTDOWN_GRACE_SEC", 10);
+        System.out.println("[INFO] Shutting down, draining in-flight requests (max " + graceSeconds + "s)...");
+        
+        // Availability streams never finish by themselves; end them first
+        AvailabilityPublisher.shutdownIfStarted();
+        
+        // Stops accepting new exchanges and waits for the running ones to finish
+        server.stop(graceSeconds);
+        
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                if (!executor.awaitTermination(graceSeconds, TimeUnit.SECONDS)) {
+                    executor.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+        
+        // Flush write-behind reservations before the pool goes away
+        HoldExpiry.shutdownIfStarted();
+        InventoryEngine.shutdownIfStarted();
+        System.out.println("[INFO] Hold expiry: " + HoldExpiry.getStatsIfStarted());
+        System.out.println("[INFO] Event cache: " + EventCache.getInstance().getStats());
+        DatabaseConfig.shutdown();
+        System.out.println("[INFO] Server stopped");
+    }
 }
\ No newline at end of file
@@ -0,0 +1,114 @@
+package benchmarks;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Minimal micro-benchmark harness (no JMH in this build): timed warmup and
+ * measurement iterations on the calling thread, reporting ops/s (mean and
+ * spread over the iterations) and bytes allocated per op from the thread's
+ * allocation counter.
+ *
+ * Options shared by every benchmark main:
+ *   --warmup N      warmup iterations (default 3)
+ *   --iterations N  measured iterations (default 5)
+ *   --seconds S     length of one iteration (default 1)
+ *   --filter TEXT   only run cases whose name contains TEXT
+ */
+public final class Bench {
+
+    @FunctionalInterface
+    public interface Op {
+        // Return something derived from the work so it cannot be optimized away
+        long run() throws Exception;
+    }
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private static final int BATCH = 256;
+
+    private final int warmup;
+    private final int iterations;
+    private final double seconds;
+    private final String filter;
+    private long sink;
+
+    public Bench(int warmup, int iterations, double seconds, String filter) {
+        this.warmup = warmup;
+        this.iterations = iterations;
+        this.seconds = seconds;
+        this.filter = filter;
+        THREADS.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    public static Bench fromArgs(String[] args) {
+        return new Bench(Integer.parseInt(arg(args, "--warmup", "3")),
+                         Integer.parseInt(arg(args, "--iterations", "5")),
+                         Double.parseDouble(arg(args, "--seconds", "1")),
+                         arg(args, "--filter", null));
+    }
+
+    public void header() {
+        System.out.printf("%-34s %14s %9s %12s%n", "benchmark", "ops/s", "+/-%", "bytes/op");
+    }
+
+    public void run(String name, Op op) throws Exception {
+        if (filter != null && !name.contains(filter)) {
+            return;
+        }
+        for (int i = 0; i < warmup; i++) {
+            measure(op);
+        }
+
+        double[] rates = new double[iterations];
+        long ops = 0;
+        long bytes = 0;
+        for (int i = 0; i < iterations; i++) {
+            long[] result = measure(op);
+            rates[i] = result[0] / (result[2] / 1e9);
+            ops += result[0];
+            bytes += result[1];
+        }
+
+        double mean = 0;
+        for (double rate : rates) mean += rate;
+        mean /= iterations;
+        double variance = 0;
+        for (double rate : rates) variance += (rate - mean) * (rate - mean);
+        double spread = iterations > 1 ? Math.sqrt(variance / (iterations - 1)) / mean * 100 : 0;
+
+        System.out.printf("%-34s %14.0f %9.1f %12d%n", name, mean, spread, bytes / Math.max(1, ops));
+    }
+
+    // Returns {operations, allocated bytes, elapsed nanos}
+    private long[] measure(Op op) throws Exception {
+        long threadId = Thread.currentThread().getId();
+        long start = System.nanoTime();
+        long deadline = start + (long) (seconds * 1e9);
+        long allocatedBefore = THREADS.getThreadAllocatedBytes(threadId);
+        long ops = 0;
+        long now;
+        do {
+            for (int i = 0; i < BATCH; i++) {
+                sink += op.run();
+            }
+            ops += BATCH;
+            now = System.nanoTime();
+        } while (now < deadline);
+        long allocated = THREADS.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        return new long[] { ops, allocated, now - start };
+    }
+
+    // Printed so the JIT has to keep every result
+    public long sink() {
+        return sink;
+    }
+
+    public static String arg(String[] args, String name, String defaultValue) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals(name)) {
+                return args[i + 1];
+            }
+        }
+        return defaultValue;
+    }
+}
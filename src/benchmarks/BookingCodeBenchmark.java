@@ -0,0 +1,170 @@
+package benchmarks;
+
+import dao.BookingCodeGenerator;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Booking code generation: first a collision check (many threads each take
+ * --codes ids from one generator; every id must be unique, every thread must
+ * see its ids strictly increasing and the text codes must sort like the ids),
+ * then single-thread and contended throughput against the old
+ * currentTimeMillis + Math.random codes. Exits with 1 if the check fails.
+ * Needs no database.
+ *
+ *   ./bench.sh BookingCodeBenchmark --threads 16 --codes 500000
+ */
+public class BookingCodeBenchmark {
+    private static final LongAdder SINK = new LongAdder();
+
+    public static void main(String[] args) throws Exception {
+        Bench bench = Bench.fromArgs(args);
+        int threads = Integer.parseInt(Bench.arg(args, "--threads",
+                String.valueOf(Math.max(4, 2 * Runtime.getRuntime().availableProcessors()))));
+        int codes = Integer.parseInt(Bench.arg(args, "--codes", "200000"));
+        double seconds = Double.parseDouble(Bench.arg(args, "--seconds", "1"));
+
+        BookingCodeGenerator generator = new BookingCodeGenerator(1);
+        boolean ok = checkUnique(generator, threads, codes);
+        ok &= checkOrdering(generator);
+        System.out.println("legacy codes: " + legacyDuplicates(threads, Math.min(codes, 50000)) +
+                           " duplicate(s) in " + threads + " x " + Math.min(codes, 50000));
+        System.out.println();
+
+        bench.header();
+        bench.run("code.legacy", () -> legacyCode().length());
+        bench.run("code.snowflake", () -> generator.nextCode().length());
+        bench.run("id.snowflake", generator::nextId);
+        System.out.println();
+
+        System.out.printf("%-34s %14s%n", "contended (" + threads + " threads)", "ops/s");
+        System.out.printf("%-34s %14.0f%n", "code.legacy", contended(threads, seconds, BookingCodeBenchmark::legacyCode));
+        System.out.printf("%-34s %14.0f%n", "code.snowflake", contended(threads, seconds, generator::nextCode));
+        System.out.println("(sink " + (bench.sink() + SINK.sum()) + ")");
+        System.exit(ok ? 0 : 1);
+    }
+
+    private static boolean checkUnique(BookingCodeGenerator generator, int threads, int codes) throws InterruptedException {
+        long[][] ids = new long[threads][codes];
+        boolean[] ordered = new boolean[threads];
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int index = t;
+            workers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long[] mine = ids[index];
+                boolean increasing = true;
+                for (int i = 0; i < codes; i++) {
+                    mine[i] = generator.nextId();
+                    if (i > 0 && mine[i] <= mine[i - 1]) {
+                        increasing = false;
+                    }
+                }
+                ordered[index] = increasing;
+            });
+            workers[t].start();
+        }
+        long began = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        double elapsed = (System.nanoTime() - began) / 1e9;
+
+        long[] all = new long[threads * codes];
+        for (int t = 0; t < threads; t++) {
+            System.arraycopy(ids[t], 0, all, t * codes, codes);
+        }
+        Arrays.sort(all);
+        int duplicates = 0;
+        for (int i = 1; i < all.length; i++) {
+            if (all[i] == all[i - 1]) {
+                duplicates++;
+            }
+        }
+        int unordered = 0;
+        for (boolean increasing : ordered) {
+            if (!increasing) unordered++;
+        }
+        System.out.printf("snowflake ids: %d duplicate(s), %d thread(s) out of order in %d x %d (%.0f ids/s)%n",
+                          duplicates, unordered, threads, codes, all.length / elapsed);
+        return duplicates == 0 && unordered == 0;
+    }
+
+    // The text form has to sort exactly like the numeric ids
+    private static boolean checkOrdering(BookingCodeGenerator generator) {
+        long previous = generator.nextId();
+        String previousCode = BookingCodeGenerator.format(previous);
+        for (int i = 0; i < 100000; i++) {
+            long id = generator.nextId();
+            String code = BookingCodeGenerator.format(id);
+            if (code.compareTo(previousCode) <= 0) {
+                System.out.println("code order broken: " + previousCode + " then " + code);
+                return false;
+            }
+            previousCode = code;
+        }
+        System.out.println("snowflake codes: sorted like their ids, e.g. " + previousCode);
+        return true;
+    }
+
+    private static int legacyDuplicates(int threads, int codes) throws InterruptedException {
+        Set<String> seen = ConcurrentHashMap.newKeySet();
+        LongAdder duplicates = new LongAdder();
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(() -> {
+                for (int i = 0; i < codes; i++) {
+                    if (!seen.add(legacyCode())) {
+                        duplicates.increment();
+                    }
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return duplicates.intValue();
+    }
+
+    private static double contended(int threads, double seconds, Supplier<String> source) throws InterruptedException {
+        LongAdder ops = new LongAdder();
+        long deadline = System.nanoTime() + (long) (seconds * 1e9);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(() -> {
+                long n = 0;
+                long length = 0;
+                while (System.nanoTime() < deadline) {
+                    for (int i = 0; i < 256; i++) {
+                        length += source.get().length();
+                    }
+                    n += 256;
+                }
+                ops.add(n);
+                SINK.add(length);
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return ops.sum() / seconds;
+    }
+
+    // What BookingDAO.generateBookingCode produced before
+    private static String legacyCode() {
+        return "BK" + System.currentTimeMillis() + "-" + (int) (Math.random() * 10000);
+    }
+}
@@ -0,0 +1,137 @@
+package benchmarks;
+
+import config.DatabaseConfig;
+import dao.BookingDAO;
+import dao.EventDAO;
+import inventory.InventoryEngine;
+import models.Event;
+import services.BookingStrategies;
+import services.BookingStrategy;
+import services.OptimisticBookingStrategy;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sells out a fresh event with each booking strategy under contention and
+ * compares throughput and latency. Needs the database from .env.
+ *
+ *   java -cp "bin;lib/*" benchmarks.BookingStrategyBenchmark \
+ *        --strategies PESSIMISTIC,OPTIMISTIC --threads 64 --tickets 2000 --organizer 1 --user 2
+ */
+public class BookingStrategyBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        String[] strategies = arg(args, "--strategies", "PESSIMISTIC,OPTIMISTIC").split(",");
+        int threads = Integer.parseInt(arg(args, "--threads", "64"));
+        int tickets = Integer.parseInt(arg(args, "--tickets", "2000"));
+        int organizerId = Integer.parseInt(arg(args, "--organizer", "1"));
+        int userId = Integer.parseInt(arg(args, "--user", "2"));
+
+        System.out.printf("%-14s %8s %10s %10s %10s %10s %8s %10s%n",
+                "strategy", "threads", "ops/s", "p50(ms)", "p99(ms)", "max(ms)", "booked", "consistent");
+        for (String name : strategies) {
+            BookingStrategy strategy = BookingStrategies.get(name.trim());
+            if (strategy == null) {
+                throw new IllegalArgumentException("Unknown strategy: " + name + " (" + BookingStrategies.names() + ")");
+            }
+            run(strategy, threads, tickets, organizerId, userId);
+        }
+        System.out.println("Optimistic: " + OptimisticBookingStrategy.getStats());
+        System.out.println("Pool: " + DatabaseConfig.getPoolStats());
+        System.exit(0);
+    }
+
+    private static void run(BookingStrategy strategy, int threads, int tickets,
+                            int organizerId, int userId) throws Exception {
+        EventDAO eventDAO = new EventDAO();
+        Event event = new Event();
+        event.setOrganizerId(organizerId);
+        event.setEventName("Benchmark " + strategy.getName() + " " + System.currentTimeMillis());
+        event.setEventDate(new Timestamp(System.currentTimeMillis() + 86400000L));
+        event.setLocation("Benchmark");
+        event.setTotalCapacity(tickets);
+        event.setAvailableTickets(tickets);
+        event.setTicketPrice(new BigDecimal("10.00"));
+        event.setStatus("ACTIVE");
+        event.setBookingStrategy(strategy.getName());
+        final Event created = eventDAO.create(event);
+
+        List<long[]> latencies = new ArrayList<>();
+        AtomicLong sold = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++) {
+            long[] samples = new long[tickets];
+            latencies.add(samples);
+            Thread worker = new Thread(() -> {
+                int n = 0;
+                try {
+                    start.await();
+                    while (true) {
+                        long begin = System.nanoTime();
+                        try {
+                            strategy.book(userId, created, 1);
+                        } catch (SQLException e) {
+                            if (e.getMessage() != null && e.getMessage().startsWith("Insufficient tickets")) {
+                                return;
+                            }
+                            continue;
+                        } finally {
+                            if (n < samples.length) samples[n++] = System.nanoTime() - begin;
+                        }
+                        sold.incrementAndGet();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    if (n < samples.length) samples[n] = -1;
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        double seconds = (System.nanoTime() - begin) / 1e9;
+
+        long[] all = latencies.stream().flatMapToLong(a -> Arrays.stream(a).takeWhile(v -> v != 0 && v != -1))
+                              .sorted().toArray();
+        // MEMORY writes behind; flush before checking the table
+        InventoryEngine.onEventChanged(created.getEventId());
+        int booked = new BookingDAO().getBookedQuantity(created.getEventId());
+        Event after = eventDAO.getById(created.getEventId());
+        boolean consistent = booked <= tickets && booked == after.getTotalCapacity() - after.getAvailableTickets();
+
+        System.out.printf("%-14s %8d %10.0f %10.2f %10.2f %10.2f %8d %10s%n",
+                strategy.getName(), threads, sold.get() / seconds,
+                percentile(all, 0.50), percentile(all, 0.99), percentile(all, 1.0),
+                booked, consistent ? "yes" : "NO");
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    private static String arg(String[] args, String name, String defaultValue) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals(name)) {
+                return args[i + 1];
+            }
+        }
+        return defaultValue;
+    }
+}
@@ -0,0 +1,296 @@
+package benchmarks;
+
+import config.DatabaseConfig;
+import controllers.BookingController;
+import controllers.EventController;
+import controllers.UserController;
+import dao.BookingDAO;
+import dao.EventDAO;
+import inventory.InventoryEngine;
+import json.JsonBody;
+import metrics.LatencyHistogram;
+import models.Event;
+import server.HttpServer;
+import server.RequestExecutors;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Replays an on-sale over HTTP: creates a few events, then N virtual users
+ * hammer POST /api/bookings for them while also polling GET /api/events/{id},
+ * until every event is sold out or the duration runs out. Reports throughput
+ * and p50/p99/p999 latency per route, then checks for every event that
+ * sum(bookings.quantity) == total_capacity - available_tickets.
+ *
+ * Runs against a server started separately (--url) or, with --embedded, against
+ * the real controllers started in this JVM on an ephemeral port. Either way the
+ * database is the one in .env, which the final check reads directly.
+ *
+ *   ./bench.sh FlashSaleLoadTest --embedded --users 200 --strategy MEMORY
+ *   ./bench.sh FlashSaleLoadTest --url http://localhost:8080 --events 5 --tickets 2000
+ *
+ * Options:
+ *   --url URL          server to load (default http://localhost:8080)
+ *   --embedded         start the API in-process instead of using --url
+ *   --users N          concurrent virtual users (default 100)
+ *   --events K         events to put on sale (default 3)
+ *   --tickets C        capacity of each event (default 500)
+ *   --strategy NAME    booking strategy of the events (default PESSIMISTIC)
+ *   --max-qty Q        tickets per booking, drawn from 1..Q (default 4)
+ *   --read-ratio R     share of requests that are event polls (default 0.5)
+ *   --duration S       stop after S seconds even if not sold out (default 60)
+ *   --organizer ID     organizer of the created events (default 1)
+ *   --user-ids A,B,..  users the bookings are made for (default 2)
+ */
+public class FlashSaleLoadTest {
+
+    private static final String BOOK = "POST /api/bookings";
+    private static final String POLL = "GET /api/events/{id}";
+
+    private final HttpClient client;
+    private final String baseUrl;
+    private final Map<String, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> statuses = new ConcurrentHashMap<>();
+    private final LongAdder errors = new LongAdder();
+
+    private FlashSaleLoadTest(String baseUrl, int users) {
+        this.baseUrl = baseUrl;
+        this.client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .executor(Executors.newFixedThreadPool(Math.min(users, 32)))
+            .build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        boolean embedded = List.of(args).contains("--embedded");
+        int users = Integer.parseInt(Bench.arg(args, "--users", "100"));
+        int eventCount = Integer.parseInt(Bench.arg(args, "--events", "3"));
+        int tickets = Integer.parseInt(Bench.arg(args, "--tickets", "500"));
+        String strategy = Bench.arg(args, "--strategy", "PESSIMISTIC");
+        int maxQty = Integer.parseInt(Bench.arg(args, "--max-qty", "4"));
+        double readRatio = Double.parseDouble(Bench.arg(args, "--read-ratio", "0.5"));
+        int duration = Integer.parseInt(Bench.arg(args, "--duration", "60"));
+        int organizer = Integer.parseInt(Bench.arg(args, "--organizer", "1"));
+        int[] userIds = parseIds(Bench.arg(args, "--user-ids", "2"));
+
+        HttpServer server = null;
+        ExecutorService serverExecutor = null;
+        String url = Bench.arg(args, "--url", "http://localhost:8080");
+        if (embedded) {
+            serverExecutor = RequestExecutors.create();
+            server = new HttpServer(0, 0, serverExecutor);
+            new BookingController().register(server);
+            new EventController().register(server);
+            new UserController().register(server);
+            server.start();
+            url = "http://localhost:" + server.getPort();
+        }
+
+        FlashSaleLoadTest test = new FlashSaleLoadTest(url, users);
+        System.out.println("Target:   " + url + (embedded ? " (embedded)" : ""));
+        System.out.printf("On-sale:  %d events x %d tickets, strategy %s, %d users, max %d per booking, %.0f%% polls%n",
+                          eventCount, tickets, strategy, users, maxQty, readRatio * 100);
+
+        int[] eventIds = new int[eventCount];
+        try {
+            for (int i = 0; i < eventCount; i++) {
+                eventIds[i] = test.createEvent(organizer, "Flash Sale #" + (i + 1), tickets, strategy);
+            }
+        } catch (Exception e) {
+            System.err.println("✗ Setup failed: " + e);
+            System.exit(2);
+        }
+
+        long elapsed = test.run(users, eventIds, userIds, maxQty, readRatio, duration);
+        test.report(elapsed);
+
+        if (embedded) {
+            server.stop(0);
+            serverExecutor.shutdown();
+            // Drains write-behind strategies so the check sees their final state
+            InventoryEngine.shutdownIfStarted();
+        }
+
+        try {
+            boolean consistent = checkInventory(eventIds);
+            DatabaseConfig.shutdown();
+            System.exit(consistent ? 0 : 1);
+        } catch (SQLException e) {
+            System.err.println("✗ Inventory check failed: " + e.getMessage());
+            System.exit(2);
+        }
+    }
+
+    private int createEvent(int organizer, String name, int tickets, String strategy) throws Exception {
+        String body = "{\"organizerId\": " + organizer + ", \"eventName\": \"" + name + "\", " +
+            "\"description\": \"FlashSaleLoadTest\", \"eventDate\": \"2030-01-01 19:00:00\", " +
+            "\"location\": \"Load Test Arena\", \"totalCapacity\": " + tickets + ", " +
+            "\"ticketPrice\": 100000.00, \"bookingStrategy\": \"" + strategy + "\"}";
+        HttpResponse<String> response = client.send(
+            HttpRequest.newBuilder(URI.create(baseUrl + "/api/events"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build(),
+            HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 201) {
+            throw new IllegalStateException("Could not create event: " + response.statusCode() + " " + response.body());
+        }
+        return JsonBody.parse(response.body()).getInt("eventId");
+    }
+
+    // Returns the elapsed nanos of the load phase
+    private long run(int users, int[] eventIds, int[] userIds, int maxQty, double readRatio, int duration)
+            throws InterruptedException {
+        AtomicIntegerArray soldOut = new AtomicIntegerArray(eventIds.length);
+        AtomicBoolean stop = new AtomicBoolean();
+        CountDownLatch startGate = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(users);
+        long deadline = System.nanoTime() + duration * 1_000_000_000L;
+
+        for (int u = 0; u < users; u++) {
+            Thread user = new Thread(() -> {
+                try {
+                    startGate.await();
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    while (!stop.get() && System.nanoTime() < deadline) {
+                        int slot = random.nextInt(eventIds.length);
+                        if (random.nextDouble() < readRatio) {
+                            send(POLL, HttpRequest.newBuilder(URI.create(baseUrl + "/api/events/" + eventIds[slot])).GET());
+                            continue;
+                        }
+                        slot = openEvent(soldOut, slot);
+                        if (slot < 0) {
+                            stop.set(true);
+                            break;
+                        }
+                        String body = "{\"userId\": " + userIds[random.nextInt(userIds.length)] +
+                            ", \"eventId\": " + eventIds[slot] + ", \"quantity\": " + (1 + random.nextInt(maxQty)) + "}";
+                        HttpResponse<String> response = send(BOOK,
+                            HttpRequest.newBuilder(URI.create(baseUrl + "/api/bookings"))
+                                .header("Content-Type", "application/json")
+                                .POST(HttpRequest.BodyPublishers.ofString(body)));
+                        // Available: 0 means sold out; a smaller remainder still takes smaller bookings
+                        if (response != null && response.statusCode() != 201
+                                && response.body().contains("Insufficient tickets. Available: 0")) {
+                            soldOut.set(slot, 1);
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            }, "vu-" + u);
+            user.setDaemon(true);
+            user.start();
+        }
+
+        long start = System.nanoTime();
+        startGate.countDown();
+        done.await();
+        return System.nanoTime() - start;
+    }
+
+    // An event that is not sold out yet, preferring the given slot; -1 if none is left
+    private static int openEvent(AtomicIntegerArray soldOut, int slot) {
+        for (int i = 0; i < soldOut.length(); i++) {
+            int candidate = (slot + i) % soldOut.length();
+            if (soldOut.get(candidate) == 0) {
+                return candidate;
+            }
+        }
+        return -1;
+    }
+
+    private HttpResponse<String> send(String route, HttpRequest.Builder request) throws InterruptedException {
+        long start = System.nanoTime();
+        try {
+            HttpResponse<String> response = client.send(request.timeout(Duration.ofSeconds(30)).build(),
+                                                        HttpResponse.BodyHandlers.ofString());
+            latencies.computeIfAbsent(route, r -> new LatencyHistogram()).recordNanos(System.nanoTime() - start);
+            statuses.computeIfAbsent(route + " " + response.statusCode(), s -> new LongAdder()).increment();
+            return response;
+        } catch (IOException e) {
+            errors.increment();
+            return null;
+        }
+    }
+
+    private void report(long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        System.out.printf("%nLoad phase: %.2f s%n%n", seconds);
+        System.out.printf("%-24s %9s %10s %9s %9s %9s %9s%n",
+                          "route", "requests", "req/s", "p50 ms", "p99 ms", "p999 ms", "max ms");
+        for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(latencies).entrySet()) {
+            LatencyHistogram h = entry.getValue();
+            System.out.printf("%-24s %9d %10.1f %9.2f %9.2f %9.2f %9.2f%n",
+                              entry.getKey(), h.getCount(), h.getCount() / seconds,
+                              h.percentile(0.50) / 1000.0, h.percentile(0.99) / 1000.0,
+                              h.percentile(0.999) / 1000.0, h.getMaxMicros() / 1000.0);
+        }
+        System.out.println();
+        for (Map.Entry<String, LongAdder> entry : new TreeMap<>(statuses).entrySet()) {
+            System.out.printf("  %-28s %9d%n", entry.getKey(), entry.getValue().sum());
+        }
+        if (errors.sum() > 0) {
+            System.out.printf("  %-28s %9d%n", "I/O errors", errors.sum());
+        }
+    }
+
+    // Compares the bookings table with the event counters, straight from the database.
+    // Write-behind strategies may still be flushing, so a mismatch is re-read for a while.
+    private static boolean checkInventory(int[] eventIds) throws Exception {
+        EventDAO eventDAO = new EventDAO();
+        BookingDAO bookingDAO = new BookingDAO();
+        System.out.printf("%n%-10s %10s %10s %10s %10s  %s%n",
+                          "event", "capacity", "available", "sold", "booked", "result");
+        boolean allConsistent = true;
+        for (int eventId : eventIds) {
+            Event event = null;
+            int booked = 0;
+            boolean consistent = false;
+            for (int attempt = 0; attempt < 20 && !consistent; attempt++) {
+                if (attempt > 0) {
+                    Thread.sleep(500);
+                }
+                event = eventDAO.getById(eventId);
+                booked = bookingDAO.getBookedQuantity(eventId);
+                consistent = booked == event.getTotalCapacity() - event.getAvailableTickets()
+                    && event.getAvailableTickets() >= 0;
+            }
+            allConsistent &= consistent;
+            System.out.printf("%-10d %10d %10d %10d %10d  %s%n", eventId, event.getTotalCapacity(),
+                              event.getAvailableTickets(), event.getTotalCapacity() - event.getAvailableTickets(),
+                              booked, consistent ? "OK" : "MISMATCH");
+        }
+        System.out.println(allConsistent ? "\n✓ Inventory consistent" : "\n✗ Inventory mismatch");
+        return allConsistent;
+    }
+
+    private static int[] parseIds(String list) {
+        List<Integer> ids = new ArrayList<>();
+        for (String part : list.split(",")) {
+            ids.add(Integer.parseInt(part.trim()));
+        }
+        return ids.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
@@ -0,0 +1,102 @@
+package benchmarks;
+
+import json.ModelJson;
+import models.Booking;
+import models.Event;
+import models.User;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Compares the old String.format converters from the controllers with the
+ * shared ModelJson encoder: throughput and bytes allocated per encoded object.
+ * Needs no database.
+ *
+ *   ./bench.sh JsonEncoderBenchmark --seconds 2
+ */
+public class JsonEncoderBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        Bench bench = Bench.fromArgs(args);
+
+        Booking booking = new Booking(2, 1, "BK1734012345678-123", 2, new BigDecimal("300000.00"));
+        booking.setBookingId(42);
+        booking.setStatus("PENDING");
+        booking.setBookingDate(new Timestamp(1734012345678L));
+        Event event = new Event();
+        event.setEventId(7);
+        event.setOrganizerId(1);
+        event.setEventName("Konser Musik Jazz 2024");
+        event.setDescription("Konser jazz terbesar tahun ini");
+        event.setEventDate(new Timestamp(1735036200000L));
+        event.setLocation("Jakarta Convention Center");
+        event.setTotalCapacity(500);
+        event.setAvailableTickets(498);
+        event.setTicketPrice(new BigDecimal("150000.00"));
+        event.setStatus("ACTIVE");
+        event.setBookingStrategy("PESSIMISTIC");
+        User user = new User();
+        user.setUserId(3);
+        user.setUsername("johndoe");
+        user.setEmail("john@example.com");
+        user.setFullName("John Doe");
+        user.setPhone("08123456789");
+        user.setRole("USER");
+        user.setCreatedAt(new Timestamp(1734012345678L));
+
+        check("booking", formatBooking(booking), ModelJson.encode(booking).toByteArray());
+        check("event", formatEvent(event), ModelJson.encode(event).toByteArray());
+        check("user", formatUser(user), ModelJson.encode(user).toByteArray());
+
+        bench.header();
+        bench.run("booking String.format", () -> formatBooking(booking).length);
+        bench.run("booking ModelJson", () -> ModelJson.encode(booking).size());
+        bench.run("event String.format", () -> formatEvent(event).length);
+        bench.run("event ModelJson", () -> ModelJson.encode(event).size());
+        bench.run("user String.format", () -> formatUser(user).length);
+        bench.run("user ModelJson", () -> ModelJson.encode(user).size());
+        System.out.println("(sink " + bench.sink() + ")");
+    }
+
+    private static void check(String name, byte[] expected, byte[] actual) {
+        if (!Arrays.equals(expected, actual)) {
+            throw new IllegalStateException(name + " output differs:\n  " +
+                new String(expected, StandardCharsets.UTF_8) + "\n  " + new String(actual, StandardCharsets.UTF_8));
+        }
+    }
+
+    // The converters the controllers used before ModelJson, plus the UTF-8 encode sendResponse did
+    private static byte[] formatBooking(Booking b) {
+        return String.format(Locale.ROOT,
+            "{\"bookingId\":%d,\"userId\":%d,\"eventId\":%d,\"bookingCode\":\"%s\",\"quantity\":%d,\"totalPrice\":%.2f,\"status\":\"%s\",\"paymentMethod\":%s,\"bookingDate\":\"%s\",\"paymentDate\":%s}",
+            b.getBookingId(), b.getUserId(), b.getEventId(), b.getBookingCode(),
+            b.getQuantity(), b.getTotalPrice(), b.getStatus(),
+            b.getPaymentMethod() != null ? "\"" + b.getPaymentMethod() + "\"" : "null",
+            b.getBookingDate(),
+            b.getPaymentDate() != null ? "\"" + b.getPaymentDate() + "\"" : "null"
+        ).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] formatEvent(Event e) {
+        return String.format(Locale.ROOT,
+            "{\"eventId\":%d,\"organizerId\":%d,\"eventName\":\"%s\",\"description\":\"%s\",\"eventDate\":\"%s\",\"location\":\"%s\",\"totalCapacity\":%d,\"availableTickets\":%d,\"ticketPrice\":%.2f,\"status\":\"%s\",\"bookingStrategy\":\"%s\"}",
+            e.getEventId(), e.getOrganizerId(), e.getEventName(),
+            e.getDescription() != null ? e.getDescription() : "",
+            e.getEventDate(), e.getLocation(), e.getTotalCapacity(),
+            e.getAvailableTickets(), e.getTicketPrice(), e.getStatus(), e.getBookingStrategy()
+        ).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] formatUser(User u) {
+        return String.format(Locale.ROOT,
+            "{\"userId\":%d,\"username\":\"%s\",\"email\":\"%s\",\"fullName\":\"%s\",\"phone\":\"%s\",\"role\":\"%s\",\"createdAt\":\"%s\"}",
+            u.getUserId(), u.getUsername(), u.getEmail(), u.getFullName(),
+            u.getPhone() != null ? u.getPhone() : "", u.getRole(),
+            u.getCreatedAt()
+        ).getBytes(StandardCharsets.UTF_8);
+    }
+}
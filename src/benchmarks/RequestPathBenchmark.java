@@ -0,0 +1,154 @@
+package benchmarks;
+
+import controllers.BookingController;
+import controllers.EventController;
+import controllers.UserController;
+import dao.BookingDAO;
+import json.JsonBody;
+import json.JsonWriter;
+import json.ModelJson;
+import models.Booking;
+import models.Event;
+import server.HttpServer;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Micro-benchmarks for the per-request hot paths: JSON encoding, request
+ * body parsing, route matching, row mapping and booking code generation.
+ * Needs no database; run it with ./bench.sh.
+ *
+ *   ./bench.sh --filter route --iterations 10
+ */
+public class RequestPathBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        Bench bench = Bench.fromArgs(args);
+
+        Booking booking = sampleBooking();
+        List<Event> events = new ArrayList<>();
+        for (int i = 1; i <= 100; i++) {
+            events.add(sampleEvent(i));
+        }
+
+        byte[] bookingBody = "{\"userId\": 2, \"eventId\": 1, \"quantity\": 2}".getBytes(StandardCharsets.UTF_8);
+        byte[] eventBody = ("{\"organizerId\": 1, \"eventName\": \"Konser Musik Jazz 2024\", " +
+                "\"description\": \"Konser jazz terbesar tahun ini\", \"eventDate\": \"2024-12-24 19:00:00\", " +
+                "\"location\": \"Jakarta Convention Center\", \"totalCapacity\": 500, \"ticketPrice\": 150000.00, " +
+                "\"bookingStrategy\": \"OPTIMISTIC\"}").getBytes(StandardCharsets.UTF_8);
+
+        // The real route table, on an ephemeral port that is never started
+        HttpServer server = new HttpServer(0, 0, null);
+        new BookingController().register(server);
+        new EventController().register(server);
+        new UserController().register(server);
+        String[][] requests = {
+            { "GET", "/api/events/42" },
+            { "POST", "/api/bookings" },
+            { "PUT", "/api/bookings/123456/confirm" },
+            { "GET", "/api/bookings/event/7" },
+            { "GET", "/api/users" },
+            { "GET", "/api/unknown/1" },
+        };
+
+        BookingDAO bookingDAO = new BookingDAO();
+        ResultSet row = fakeRow(bookingRow());
+
+        bench.header();
+        bench.run("json.encode.booking", () -> ModelJson.encode(booking).size());
+        bench.run("json.encode.eventPage(100)", () -> {
+            JsonWriter w = JsonWriter.local().beginArray();
+            for (Event event : events) {
+                ModelJson.write(w, event);
+            }
+            return w.endArray().size();
+        });
+        bench.run("json.parse.createBooking", () ->
+            JsonBody.parse(bookingBody, 0, bookingBody.length).getInt("quantity"));
+        bench.run("json.parse.createEvent", () ->
+            JsonBody.parse(eventBody, 0, eventBody.length).getString("location").length());
+        int[] next = { 0 };
+        bench.run("route.match(6 paths)", () -> {
+            String[] request = requests[next[0]++ % requests.length];
+            String pattern = server.match(request[0], request[1]);
+            return pattern == null ? 0 : pattern.length();
+        });
+        bench.run("dao.mapResultSetToBooking", () -> bookingDAO.mapResultSetToBooking(row).getQuantity());
+        bench.run("booking.generateCode", () -> BookingDAO.generateBookingCode().length());
+
+        System.out.println("(sink " + bench.sink() + ")");
+        System.exit(0);
+    }
+
+    // A ResultSet positioned on one row, answering the getters by column label
+    static ResultSet fakeRow(Map<String, Object> columns) {
+        boolean[] wasNull = { false };
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[] { ResultSet.class },
+            (proxy, method, args) -> {
+                String name = method.getName();
+                if (name.equals("wasNull")) {
+                    return wasNull[0];
+                }
+                if (!name.startsWith("get") || args == null || !(args[0] instanceof String)) {
+                    throw new UnsupportedOperationException(name);
+                }
+                Object value = columns.get(args[0]);
+                wasNull[0] = value == null;
+                switch (name) {
+                    case "getInt":  return value == null ? 0 : ((Number) value).intValue();
+                    case "getLong": return value == null ? 0L : ((Number) value).longValue();
+                    default:        return value;
+                }
+            });
+    }
+
+    private static Map<String, Object> bookingRow() {
+        Map<String, Object> row = new HashMap<>();
+        Timestamp now = new Timestamp(1734012345678L);
+        row.put("booking_id", 42);
+        row.put("user_id", 2);
+        row.put("event_id", 1);
+        row.put("booking_code", "BK1734012345678-123");
+        row.put("quantity", 2);
+        row.put("total_price", new BigDecimal("300000.00"));
+        row.put("status", "PENDING");
+        row.put("payment_method", null);
+        row.put("booking_date", now);
+        row.put("payment_date", null);
+        row.put("created_at", now);
+        row.put("updated_at", now);
+        return row;
+    }
+
+    private static Booking sampleBooking() {
+        Booking booking = new Booking(2, 1, "BK1734012345678-123", 2, new BigDecimal("300000.00"));
+        booking.setBookingId(42);
+        booking.setStatus("PENDING");
+        booking.setBookingDate(new Timestamp(1734012345678L));
+        return booking;
+    }
+
+    private static Event sampleEvent(int id) {
+        Event event = new Event();
+        event.setEventId(id);
+        event.setOrganizerId(1);
+        event.setEventName("Konser Musik Jazz 2024 #" + id);
+        event.setDescription("Konser jazz terbesar tahun ini");
+        event.setEventDate(new Timestamp(1735036200000L));
+        event.setLocation("Jakarta Convention Center");
+        event.setTotalCapacity(500);
+        event.setAvailableTickets(498);
+        event.setTicketPrice(new BigDecimal("150000.00"));
+        event.setStatus("ACTIVE");
+        event.setBookingStrategy("PESSIMISTIC");
+        return event;
+    }
+}
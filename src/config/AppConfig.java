@@ -0,0 +1,43 @@
+package config;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Properties;
+
+public class AppConfig {
+    private static final Properties PROPS = new Properties();
+
+    static {
+        try (FileInputStream in = new FileInputStream(".env")) {
+            PROPS.load(in);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to load configuration from .env", e);
+        }
+    }
+
+    public static String get(String key, String defaultValue) {
+        String value = PROPS.getProperty(key);
+        return value == null || value.trim().isEmpty() ? defaultValue : value.trim();
+    }
+
+    public static int getInt(String key, int defaultValue) {
+        return (int) getLong(key, defaultValue);
+    }
+
+    public static long getLong(String key, long defaultValue) {
+        String value = get(key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new RuntimeException("Invalid number for " + key + ": " + value, e);
+        }
+    }
+
+    public static boolean getBoolean(String key, boolean defaultValue) {
+        String value = get(key, null);
+        return value == null ? defaultValue : Boolean.parseBoolean(value);
+    }
+}
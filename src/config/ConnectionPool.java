@@ -0,0 +1,423 @@
+package config;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Small fixed-bound JDBC connection pool.
+ *
+ * Connections are handed out as proxies whose close() returns the physical
+ * connection to the pool instead of closing it, so the DAOs keep using
+ * try-with-resources exactly as before.
+ */
+public class ConnectionPool {
+    private static final long HOUSEKEEPING_INTERVAL_MS = 5000;
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int minIdle;
+    private final int maxSize;
+    private final long acquireTimeoutMs;
+    private final long idleTimeoutMs;
+    private final long leakDetectionMs;
+    private final long validationIntervalMs;
+    private final int validationTimeoutSec;
+
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Condition available = lock.newCondition();
+    private final Deque<PooledConnection> idle = new ArrayDeque<>();
+    private final Set<PooledConnection> borrowed = ConcurrentHashMap.newKeySet();
+    private int total;
+    private int waiters;
+    private boolean closed;
+
+    private final LongAdder acquireCount = new LongAdder();
+    private final LongAdder acquireNanos = new LongAdder();
+    private final AtomicLong maxAcquireNanos = new AtomicLong();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder validationFailures = new LongAdder();
+    private final LongAdder leaks = new LongAdder();
+
+    private final ScheduledExecutorService housekeeper;
+
+    public ConnectionPool(String url, String user, String password, int minIdle, int maxSize,
+                          long acquireTimeoutMs, long idleTimeoutMs, long leakDetectionMs,
+                          long validationIntervalMs, int validationTimeoutSec, long statsLogIntervalMs) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Pool max size must be greater than 0");
+        }
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.minIdle = Math.min(Math.max(minIdle, 0), maxSize);
+        this.maxSize = maxSize;
+        this.acquireTimeoutMs = acquireTimeoutMs;
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.leakDetectionMs = leakDetectionMs;
+        this.validationIntervalMs = validationIntervalMs;
+        this.validationTimeoutSec = validationTimeoutSec;
+
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "db-pool-housekeeper");
+            t.setDaemon(true);
+            return t;
+        });
+        housekeeper.scheduleWithFixedDelay(this::housekeep, 0, HOUSEKEEPING_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        if (statsLogIntervalMs > 0) {
+            housekeeper.scheduleAtFixedRate(() -> System.out.println("[POOL] " + getStats()),
+                    statsLogIntervalMs, statsLogIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public Connection getConnection() throws SQLException {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(acquireTimeoutMs);
+
+        while (true) {
+            PooledConnection pc = null;
+            boolean create = false;
+
+            lock.lock();
+            try {
+                while (true) {
+                    if (closed) {
+                        throw new SQLNonTransientConnectionException("Connection pool is shut down", "08003");
+                    }
+                    pc = idle.pollFirst();
+                    if (pc != null) {
+                        break;
+                    }
+                    if (total < maxSize) {
+                        total++;
+                        create = true;
+                        break;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        timeouts.increment();
+                        throw new SQLTransientConnectionException("Timed out after " + acquireTimeoutMs +
+                                " ms waiting for a database connection (active=" + borrowed.size() +
+                                ", max=" + maxSize + ")");
+                    }
+                    waiters++;
+                    try {
+                        available.awaitNanos(remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLTransientConnectionException("Interrupted while waiting for a database connection", e);
+                    } finally {
+                        waiters--;
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            if (create) {
+                try {
+                    pc = new PooledConnection(openPhysical());
+                } catch (SQLException e) {
+                    releaseSlot();
+                    throw e;
+                }
+            } else if (!validate(pc)) {
+                validationFailures.increment();
+                discard(pc);
+                continue;
+            }
+
+            Connection lease = pc.borrow(leakDetectionMs > 0 ? new Throwable("Connection acquired here") : null);
+            borrowed.add(pc);
+            recordAcquire(System.nanoTime() - start);
+            return lease;
+        }
+    }
+
+    public PoolStats getStats() {
+        lock.lock();
+        try {
+            long count = acquireCount.sum();
+            long avgMicros = count == 0 ? 0 : acquireNanos.sum() / count / 1000;
+            return new PoolStats(borrowed.size(), idle.size(), total, maxSize, waiters,
+                    count, avgMicros, maxAcquireNanos.get() / 1000,
+                    timeouts.sum(), validationFailures.sum(), leaks.sum());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void shutdown() {
+        List<PooledConnection> toClose;
+        lock.lock();
+        try {
+            closed = true;
+            toClose = new ArrayList<>(idle);
+            idle.clear();
+            total -= toClose.size();
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        housekeeper.shutdownNow();
+        for (PooledConnection pc : toClose) {
+            closeQuietly(pc.raw);
+        }
+    }
+
+    private Connection openPhysical() throws SQLException {
+        return DriverManager.getConnection(url, user, password);
+    }
+
+    private boolean validate(PooledConnection pc) {
+        if (System.currentTimeMillis() - pc.lastReturnedAt < validationIntervalMs) {
+            return true;
+        }
+        try {
+            return pc.raw.isValid(validationTimeoutSec);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void recordAcquire(long nanos) {
+        acquireCount.increment();
+        acquireNanos.add(nanos);
+        long prev;
+        while (nanos > (prev = maxAcquireNanos.get())) {
+            if (maxAcquireNanos.compareAndSet(prev, nanos)) {
+                break;
+            }
+        }
+    }
+
+    private void release(PooledConnection pc) {
+        borrowed.remove(pc);
+
+        boolean healthy;
+        try {
+            healthy = !pc.raw.isClosed();
+            if (healthy && !pc.raw.getAutoCommit()) {
+                // Never hand out a connection with a half-finished transaction
+                pc.raw.rollback();
+                pc.raw.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            healthy = false;
+        }
+
+        if (!healthy) {
+            discard(pc);
+            return;
+        }
+
+        lock.lock();
+        try {
+            if (closed) {
+                total--;
+            } else {
+                pc.lastReturnedAt = System.currentTimeMillis();
+                idle.addFirst(pc);
+                available.signal();
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        closeQuietly(pc.raw);
+    }
+
+    private void discard(PooledConnection pc) {
+        closeQuietly(pc.raw);
+        releaseSlot();
+    }
+
+    private void releaseSlot() {
+        lock.lock();
+        try {
+            total--;
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void housekeep() {
+        try {
+            evictIdle();
+            fillToMinIdle();
+            detectLeaks();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void evictIdle() {
+        if (idleTimeoutMs <= 0) {
+            return;
+        }
+        List<PooledConnection> evicted = new ArrayList<>();
+        long now = System.currentTimeMillis();
+
+        lock.lock();
+        try {
+            // Oldest connections sit at the tail because returns go to the head
+            Iterator<PooledConnection> it = idle.descendingIterator();
+            while (it.hasNext() && total > minIdle) {
+                PooledConnection pc = it.next();
+                if (now - pc.lastReturnedAt > idleTimeoutMs) {
+                    it.remove();
+                    total--;
+                    evicted.add(pc);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        for (PooledConnection pc : evicted) {
+            closeQuietly(pc.raw);
+        }
+    }
+
+    private void fillToMinIdle() {
+        while (true) {
+            lock.lock();
+            try {
+                if (closed || total >= minIdle || idle.size() >= minIdle) {
+                    return;
+                }
+                total++;
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                PooledConnection pc = new PooledConnection(openPhysical());
+                lock.lock();
+                try {
+                    idle.addLast(pc);
+                    available.signal();
+                } finally {
+                    lock.unlock();
+                }
+            } catch (SQLException e) {
+                releaseSlot();
+                System.err.println("[POOL] Failed to open connection: " + e.getMessage());
+                return;
+            }
+        }
+    }
+
+    private void detectLeaks() {
+        if (leakDetectionMs <= 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (PooledConnection pc : borrowed) {
+            if (!pc.leakReported && now - pc.borrowedAt > leakDetectionMs) {
+                pc.leakReported = true;
+                leaks.increment();
+                System.err.println("[POOL] Possible connection leak: held for " + (now - pc.borrowedAt) +
+                        " ms by thread " + pc.borrowerThread);
+                if (pc.borrowSite != null) {
+                    pc.borrowSite.printStackTrace();
+                }
+            }
+        }
+    }
+
+    private static void closeQuietly(Connection conn) {
+        try {
+            conn.close();
+        } catch (SQLException ignored) {
+        }
+    }
+
+    private final class PooledConnection {
+        final Connection raw;
+        volatile long lastReturnedAt = System.currentTimeMillis();
+        volatile long borrowedAt;
+        volatile String borrowerThread;
+        volatile Throwable borrowSite;
+        volatile boolean leakReported;
+
+        PooledConnection(Connection raw) {
+            this.raw = raw;
+        }
+
+        // A new proxy per borrow, so one kept after close() cannot reach the next borrower's session
+        Connection borrow(Throwable site) {
+            borrowedAt = System.currentTimeMillis();
+            borrowerThread = Thread.currentThread().getName();
+            borrowSite = site;
+            leakReported = false;
+            return (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(), new Class<?>[] { Connection.class }, new Lease(this));
+        }
+    }
+
+    // The handler behind one borrow's proxy
+    private final class Lease implements InvocationHandler {
+        final PooledConnection pc;
+        final Connection raw;
+        final AtomicBoolean returned = new AtomicBoolean();
+
+        Lease(PooledConnection pc) {
+            this.pc = pc;
+            this.raw = pc.raw;
+        }
+
+        @Override
+        public Object invoke(Object p, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("close")) {
+                if (returned.compareAndSet(false, true)) {
+                    release(pc);
+                }
+                return null;
+            }
+            if (name.equals("isClosed")) {
+                return returned.get() || raw.isClosed();
+            }
+            if (name.equals("equals")) {
+                return p == args[0];
+            }
+            if (name.equals("hashCode")) {
+                return System.identityHashCode(p);
+            }
+            if (name.equals("toString")) {
+                return "Pooled[" + raw + "]";
+            }
+            if (returned.get()) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+            try {
+                return method.invoke(raw, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -1,35 +1,133 @@
 package config;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.io.FileInputStream;
-import java.io.IOException;
-import java.util.Properties;
 
 public class DatabaseConfig {
     private static final String DB_URL;
     private static final String DB_USER;
     private static final String DB_PASSWORD;
-    
+    private static final ConnectionPool POOL;
+    private static final ReplicaRouter READS;
+    private static final int STREAM_FETCH_SIZE;
+
     static {
-        Properties props = new Properties();
+        DB_URL = AppConfig.get("DB_URL", "jdbc:mysql://localhost:3306/be_submissionmember_soal2_davingabrieljonathan");
+        DB_USER = AppConfig.get("DB_USER", "root");
+        DB_PASSWORD = AppConfig.get("DB_PASSWORD", "");
+
         try {
-            props.load(new FileInputStream(".env"));
-            DB_URL = props.getProperty("DB_URL", "jdbc:mysql://localhost:3306/be_submissionmember_soal2_davingabrieljonathan");
-            DB_USER = props.getProperty("DB_USER", "root");
-            DB_PASSWORD = props.getProperty("DB_PASSWORD", "");
-        } catch (IOException e) {
-            throw new RuntimeException("Failed to load database configuration", e);
+            Class.forName("com.mysql.cj.jdbc.Driver");
+        } catch (ClassNotFoundException e) {
+            throw new RuntimeException("MySQL Driver not found", e);
+        }
+
+        // Connector/J only streams rows one by one with Integer.MIN_VALUE; a
+        // positive value needs useCursorFetch=true in DB_URL
+        STREAM_FETCH_SIZE = AppConfig.getInt("DB_STREAM_FETCH_SIZE", Integer.MIN_VALUE);
+        
+        POOL = new ConnectionPool(
+            DB_URL, DB_USER, DB_PASSWORD,
+            AppConfig.getInt("DB_POOL_MIN_IDLE", 2),
+            AppConfig.getInt("DB_POOL_MAX_SIZE", 10),
+            AppConfig.getLong("DB_POOL_ACQUIRE_TIMEOUT_MS", 5000),
+            AppConfig.getLong("DB_POOL_IDLE_TIMEOUT_MS", 600000),
+            AppConfig.getLong("DB_POOL_LEAK_DETECTION_MS", 0),
+            AppConfig.getLong("DB_POOL_VALIDATION_INTERVAL_MS", 500),
+            AppConfig.getInt("DB_POOL_VALIDATION_TIMEOUT_SEC", 2),
+            AppConfig.getLong("DB_POOL_STATS_LOG_MS", 0)
+        );
+        
+        // Comma-separated; empty means every read goes to DB_URL
+        String replicaUrls = AppConfig.get("DB_REPLICA_URLS", "").trim();
+        String[] urls = replicaUrls.isEmpty() ? new String[0] : replicaUrls.split("\\s*,\\s*");
+        ReplicaRouter.Replica[] replicas = new ReplicaRouter.Replica[urls.length];
+        for (int i = 0; i < urls.length; i++) {
+            replicas[i] = new ReplicaRouter.Replica(i, new ConnectionPool(
+                urls[i],
+                AppConfig.get("DB_REPLICA_USER", DB_USER),
+                AppConfig.get("DB_REPLICA_PASSWORD", DB_PASSWORD),
+                AppConfig.getInt("DB_POOL_MIN_IDLE", 2),
+                AppConfig.getInt("DB_REPLICA_POOL_MAX_SIZE", AppConfig.getInt("DB_POOL_MAX_SIZE", 10)),
+                AppConfig.getLong("DB_REPLICA_ACQUIRE_TIMEOUT_MS", 1000),
+                AppConfig.getLong("DB_POOL_IDLE_TIMEOUT_MS", 600000),
+                AppConfig.getLong("DB_POOL_LEAK_DETECTION_MS", 0),
+                AppConfig.getLong("DB_POOL_VALIDATION_INTERVAL_MS", 500),
+                AppConfig.getInt("DB_POOL_VALIDATION_TIMEOUT_SEC", 2),
+                0
+            ));
+        }
+        READS = new ReplicaRouter(POOL, replicas,
+            AppConfig.getLong("DB_REPLICA_MAX_LAG_SEC", 5),
+            AppConfig.getLong("DB_READ_YOUR_WRITES_MS", 5000),
+            AppConfig.getLong("DB_REPLICA_HEALTH_INTERVAL_MS", 2000));
+        if (urls.length > 0) {
+            System.out.println("[DB] Routing reads to " + urls.length + " replica(s)");
         }
     }
-    
+
+    // Primary connection: every write, and reads that decide a write
     public static Connection getConnection() throws SQLException {
-        try {
-            Class.forName("com.mysql.cj.jdbc.Driver");
-            return DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
-        } catch (ClassNotFoundException e) {
-            throw new SQLException("MySQL Driver not found", e);
+        return POOL.getConnection();
+    }
+
+    // Connection for a read that may lag a little behind the primary
+    public static Connection getReadConnection() throws SQLException {
+        return READS.getConnection(null);
+    }
+
+    // Read about one row (e.g. "user", 42); stays on the primary for
+    // DB_READ_YOUR_WRITES_MS after recordWrite for the same row
+    public static Connection getReadConnection(String entity, int id) throws SQLException {
+        return READS.getConnection(READS.hasReplicas() ? entity + ':' + id : null);
+    }
+
+    public static void recordWrite(String entity, int id) {
+        if (READS.hasReplicas()) {
+            READS.recordWrite(entity + ':' + id);
         }
     }
+
+    // Forward-only, read-only statement that streams its ResultSet instead of
+    // buffering every row in the driver
+    public static PreparedStatement prepareStreaming(Connection conn, String sql) throws SQLException {
+        PreparedStatement stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        stmt.setFetchSize(STREAM_FETCH_SIZE);
+        return stmt;
+    }
+    
+    public static PoolStats getPoolStats() {
+        return POOL.getStats();
+    }
+
+    public static int getReplicaCount() {
+        return READS.getReplicas().length;
+    }
+
+    public static boolean isReplicaHealthy(int replica) {
+        return READS.getReplicas()[replica].healthy;
+    }
+
+    public static long getReplicaLagSec(int replica) {
+        return READS.getReplicas()[replica].lagSec;
+    }
+
+    public static long getReplicaReads(int replica) {
+        return READS.getReplicas()[replica].reads.sum();
+    }
+
+    public static long getPrimaryReads() {
+        return READS.getPrimaryReads();
+    }
+
+    public static PoolStats getReplicaPoolStats(int replica) {
+        return READS.getReplicas()[replica].pool.getStats();
+    }
+
+    public static void shutdown() {
+        READS.shutdown();
+        POOL.shutdown();
+    }
 }
@@ -0,0 +1,51 @@
+package config;
+
+public class PoolStats {
+    private final int active;
+    private final int idle;
+    private final int total;
+    private final int maxSize;
+    private final int waiters;
+    private final long acquireCount;
+    private final long avgAcquireMicros;
+    private final long maxAcquireMicros;
+    private final long timeouts;
+    private final long validationFailures;
+    private final long leaks;
+
+    public PoolStats(int active, int idle, int total, int maxSize, int waiters,
+                     long acquireCount, long avgAcquireMicros, long maxAcquireMicros,
+                     long timeouts, long validationFailures, long leaks) {
+        this.active = active;
+        this.idle = idle;
+        this.total = total;
+        this.maxSize = maxSize;
+        this.waiters = waiters;
+        this.acquireCount = acquireCount;
+        this.avgAcquireMicros = avgAcquireMicros;
+        this.maxAcquireMicros = maxAcquireMicros;
+        this.timeouts = timeouts;
+        this.validationFailures = validationFailures;
+        this.leaks = leaks;
+    }
+
+    public int getActive() { return active; }
+    public int getIdle() { return idle; }
+    public int getTotal() { return total; }
+    public int getMaxSize() { return maxSize; }
+    public int getWaiters() { return waiters; }
+    public long getAcquireCount() { return acquireCount; }
+    public long getAvgAcquireMicros() { return avgAcquireMicros; }
+    public long getMaxAcquireMicros() { return maxAcquireMicros; }
+    public long getTimeouts() { return timeouts; }
+    public long getValidationFailures() { return validationFailures; }
+    public long getLeaks() { return leaks; }
+
+    @Override
+    public String toString() {
+        return "active=" + active + " idle=" + idle + " total=" + total + "/" + maxSize +
+               " waiters=" + waiters + " acquired=" + acquireCount +
+               " avgAcquire=" + avgAcquireMicros + "us maxAcquire=" + maxAcquireMicros + "us" +
+               " timeouts=" + timeouts + " invalid=" + validationFailures + " leaks=" + leaks;
+    }
+}
@@ -0,0 +1,170 @@
+package config;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Routes reads to the read replicas in DB_REPLICA_URLS, round-robin over
+ * the healthy ones. A background check every DB_REPLICA_HEALTH_INTERVAL_MS
+ * marks a replica down when it cannot be reached or lags more than
+ * DB_REPLICA_MAX_LAG_SEC behind; a replica that fails a read is marked down
+ * at once and the read moves on. With no healthy replica reads use the
+ * primary.
+ *
+ * Read-your-writes: write paths record the rows they changed as keys like
+ * user:42, and for DB_READ_YOUR_WRITES_MS afterwards reads about those keys
+ * stay on the primary, so a caller never reads around its own write.
+ */
+public class ReplicaRouter {
+
+    static final class Replica {
+        final int index;
+        final ConnectionPool pool;
+        volatile boolean healthy = true;
+        // Seconds behind the primary from the last check, -1 when unknown
+        volatile long lagSec = -1;
+        final LongAdder reads = new LongAdder();
+
+        Replica(int index, ConnectionPool pool) {
+            this.index = index;
+            this.pool = pool;
+        }
+    }
+
+    private final ConnectionPool primary;
+    private final Replica[] replicas;
+    private final AtomicInteger next = new AtomicInteger();
+    private final long maxLagSec;
+    private final long readYourWritesNanos;
+    private final Map<String, Long> recentWrites = new ConcurrentHashMap<>();
+    private final LongAdder primaryReads = new LongAdder();
+    private final ScheduledExecutorService checker;
+
+    ReplicaRouter(ConnectionPool primary, Replica[] replicas, long maxLagSec,
+                  long readYourWritesMs, long healthIntervalMs) {
+        this.primary = primary;
+        this.replicas = replicas;
+        this.maxLagSec = maxLagSec;
+        this.readYourWritesNanos = TimeUnit.MILLISECONDS.toNanos(readYourWritesMs);
+        if (replicas.length == 0) {
+            this.checker = null;
+            return;
+        }
+        this.checker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "db-replica-health");
+            t.setDaemon(true);
+            return t;
+        });
+        checker.scheduleWithFixedDelay(this::check, 0, healthIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    boolean hasReplicas() {
+        return replicas.length > 0;
+    }
+
+    // A replica connection, or the primary when key was written recently or no replica is up
+    Connection getConnection(String key) throws SQLException {
+        if (replicas.length > 0 && (key == null || !writtenRecently(key))) {
+            int start = Math.floorMod(next.getAndIncrement(), replicas.length);
+            for (int i = 0; i < replicas.length; i++) {
+                Replica replica = replicas[(start + i) % replicas.length];
+                if (!replica.healthy) {
+                    continue;
+                }
+                try {
+                    Connection conn = replica.pool.getConnection();
+                    replica.reads.increment();
+                    return conn;
+                } catch (SQLException e) {
+                    replica.healthy = false;
+                    System.err.println("[DB] Replica " + replica.index + " failed, skipping it: " + e.getMessage());
+                }
+            }
+        }
+        primaryReads.increment();
+        return primary.getConnection();
+    }
+
+    void recordWrite(String key) {
+        recentWrites.put(key, System.nanoTime());
+    }
+
+    private boolean writtenRecently(String key) {
+        Long writtenAt = recentWrites.get(key);
+        return writtenAt != null && System.nanoTime() - writtenAt < readYourWritesNanos;
+    }
+
+    Replica[] getReplicas() {
+        return replicas;
+    }
+
+    long getPrimaryReads() {
+        return primaryReads.sum();
+    }
+
+    void shutdown() {
+        if (checker != null) {
+            checker.shutdownNow();
+        }
+        for (Replica replica : replicas) {
+            replica.pool.shutdown();
+        }
+    }
+
+    private void check() {
+        long now = System.nanoTime();
+        Iterator<Long> writes = recentWrites.values().iterator();
+        while (writes.hasNext()) {
+            if (now - writes.next() >= readYourWritesNanos) {
+                writes.remove();
+            }
+        }
+
+        for (Replica replica : replicas) {
+            boolean healthy;
+            try (Connection conn = replica.pool.getConnection()) {
+                replica.lagSec = lag(conn);
+                healthy = replica.lagSec != Long.MAX_VALUE && (maxLagSec <= 0 || replica.lagSec <= maxLagSec);
+            } catch (SQLException e) {
+                healthy = false;
+            }
+            if (healthy != replica.healthy) {
+                System.out.println("[DB] Replica " + replica.index + " is " + (healthy ? "up" : "down") +
+                                   (replica.lagSec >= 0 && replica.lagSec != Long.MAX_VALUE ? " (lag " + replica.lagSec + "s)" : ""));
+            }
+            replica.healthy = healthy;
+        }
+    }
+
+    // Seconds_Behind_Source; -1 when the server reports no replication (or we
+    // may not ask), Long.MAX_VALUE when replication is configured but stopped
+    private static long lag(Connection conn) throws SQLException {
+        for (String sql : new String[] { "SHOW REPLICA STATUS", "SHOW SLAVE STATUS" }) {
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery(sql)) {
+                if (!rs.next()) {
+                    return -1;
+                }
+                String column = sql.contains("REPLICA") ? "Seconds_Behind_Source" : "Seconds_Behind_Master";
+                long lag = rs.getLong(column);
+                return rs.wasNull() ? Long.MAX_VALUE : lag;
+            } catch (SQLException e) {
+                // Syntax error on MySQL before 8.0.22, or no REPLICATION CLIENT privilege
+                if (!conn.isValid(2)) {
+                    throw e;
+                }
+            }
+        }
+        return -1;
+    }
+}
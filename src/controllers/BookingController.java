@@ -1,198 +1,189 @@
 package controllers;
 
 import com.sun.net.httpserver.HttpExchange;
-import com.sun.net.httpserver.HttpHandler;
+import dao.PageRequest;
+import json.JsonBody;
+import json.JsonException;
+import json.JsonWriter;
+import json.ModelJson;
+import server.HttpServer;
+import server.IdempotencyStore;
+import server.JsonPageStream;
+import server.PathParams;
+import server.QueryString;
+import server.WaitingRoom;
 import services.BookingService;
 import models.Booking;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Map;
 
-public class BookingController implements HttpHandler {
+public class BookingController {
     private BookingService bookingService;
+    private final IdempotencyStore idempotency = new IdempotencyStore();
     
     public BookingController() {
         this.bookingService = new BookingService();
     }
     
-    @Override
-    public void handle(HttpExchange exchange) throws IOException {
-        // Enable CORS
-        exchange.getResponseHeaders().add("Access-Control-Allow-Origin", "*");
-        exchange.getResponseHeaders().add("Access-Control-Allow-Methods", "GET, POST, PUT, DELETE, OPTIONS");
-        exchange.getResponseHeaders().add("Access-Control-Allow-Headers", "Content-Type");
+    public void register(HttpServer server) {
+        server.get("/api/bookings", this::getAll);
+        server.get("/api/bookings/{id}", this::getById);
+        server.get("/api/bookings/user/{userId}", this::getByUser);
+        server.get("/api/bookings/event/{eventId}", this::getByEvent);
+        server.post("/api/bookings", this::create);
+        server.post("/api/bookings/batch", this::createBatch);
+        server.put("/api/bookings/{id}/confirm", this::confirm);
+        server.put("/api/bookings/{id}/cancel", this::cancel);
+        server.delete("/api/bookings/{id}", this::delete);
+    }
+    
+    private void getAll(HttpExchange exchange, PathParams params) throws Exception {
+        PageRequest page = pageRequest(exchange);
+        JsonPageStream.send(exchange, out -> bookingService.streamAllBookings(page, b -> out.write(ModelJson.encode(b))));
+    }
+    
+    private void getById(HttpExchange exchange, PathParams params) throws Exception {
+        Booking booking = bookingService.getBookingById(params.getInt("id"));
         
-        if (exchange.getRequestMethod().equalsIgnoreCase("OPTIONS")) {
-            exchange.sendResponseHeaders(204, -1);
-            return;
+        if (booking != null) {
+            sendResponse(exchange, 200, ModelJson.encode(booking));
+        } else {
+            sendResponse(exchange, 404, "{\"error\": \"Booking not found\"}");
         }
+    }
+    
+    private void getByUser(HttpExchange exchange, PathParams params) throws Exception {
+        int userId = params.getInt("userId");
+        PageRequest page = pageRequest(exchange);
+        JsonPageStream.send(exchange, out -> bookingService.streamUserBookings(userId, page, b -> out.write(ModelJson.encode(b))));
+    }
+    
+    private void getByEvent(HttpExchange exchange, PathParams params) throws Exception {
+        int eventId = params.getInt("eventId");
+        PageRequest page = pageRequest(exchange);
+        JsonPageStream.send(exchange, out -> bookingService.streamEventBookings(eventId, page, b -> out.write(ModelJson.encode(b))));
+    }
+    
+    private void create(HttpExchange exchange, PathParams params) throws Exception {
+        JsonBody body = readBody(exchange);
+        
+        int userId = body.getInt("userId");
+        int eventId = body.getInt("eventId");
+        int quantity = body.getInt("quantity");
         
-        String method = exchange.getRequestMethod();
-        String path = exchange.getRequestURI().getPath();
+        String key = exchange.getRequestHeaders().getFirst("Idempotency-Key");
+        if (key != null && (key.isEmpty() || key.length() > 255)) {
+            throw new JsonException(400, "Idempotency-Key must be 1-255 characters");
+        }
+        String queueToken = exchange.getRequestHeaders().getFirst("Queue-Token");
         
         try {
-            if (method.equals("GET")) {
-                handleGet(exchange, path);
-            } else if (method.equals("POST")) {
-                handlePost(exchange, path);
-            } else if (method.equals("PUT")) {
-                handlePut(exchange, path);
-            } else if (method.equals("DELETE")) {
-                handleDelete(exchange, path);
-            } else {
-                sendResponse(exchange, 405, "{\"error\": \"Method not allowed\"}");
+            if (key == null) {
+                Booking booking = book(userId, eventId, quantity, queueToken);
+                sendResponse(exchange, 201, ModelJson.encode(booking));
+                return;
             }
-        } catch (Exception e) {
-            e.printStackTrace();
-            sendResponse(exchange, 500, "{\"error\": \"" + e.getMessage() + "\"}");
-        }
-    }
-    
-    private void handleGet(HttpExchange exchange, String path) throws Exception {
-        if (path.equals("/api/bookings")) {
-            // GET all bookings
-            List<Booking> bookings = bookingService.getAllBookings();
-            String json = convertBookingsToJson(bookings);
-            sendResponse(exchange, 200, json);
-        } 
-        else if (path.matches("/api/bookings/\\d+")) {
-            // GET booking by ID
-            int bookingId = extractIdFromPath(path);
-            Booking booking = bookingService.getBookingById(bookingId);
             
-            if (booking != null) {
-                String json = convertBookingToJson(booking);
-                sendResponse(exchange, 200, json);
-            } else {
-                sendResponse(exchange, 404, "{\"error\": \"Booking not found\"}");
+            // Keys are per user, so two clients picking the same key never collide
+            IdempotencyStore.Response response = idempotency.execute(userId + "/" + key, eventId + ":" + quantity, () ->
+                new IdempotencyStore.Response(201, ModelJson.encode(
+                    book(userId, eventId, quantity, queueToken)).toByteArray()));
+            if (response.isReplayed()) {
+                exchange.getResponseHeaders().set("Idempotent-Replayed", "true");
             }
-        }
-        else if (path.matches("/api/bookings/user/\\d+")) {
-            // GET bookings by user
-            int userId = Integer.parseInt(path.substring(path.lastIndexOf('/') + 1));
-            List<Booking> bookings = bookingService.getUserBookings(userId);
-            String json = convertBookingsToJson(bookings);
-            sendResponse(exchange, 200, json);
-        }
-        else if (path.matches("/api/bookings/event/\\d+")) {
-            // GET bookings by event
-            int eventId = Integer.parseInt(path.substring(path.lastIndexOf('/') + 1));
-            List<Booking> bookings = bookingService.getEventBookings(eventId);
-            String json = convertBookingsToJson(bookings);
-            sendResponse(exchange, 200, json);
-        }
-        else {
-            sendResponse(exchange, 404, "{\"error\": \"Not found\"}");
+            sendResponse(exchange, response.getStatus(), response.getBody());
+        } catch (WaitingRoom.QueuedException e) {
+            exchange.getResponseHeaders().set("Retry-After", String.valueOf(e.getRetryAfterSec()));
+            sendResponse(exchange, 429, JsonWriter.local().beginObject()
+                    .name("error").value(e.getMessage())
+                    .name("queueToken").value(e.getToken())
+                    .name("position").value(e.getPosition())
+                    .name("retryAfter").value(e.getRetryAfterSec())
+                    .endObject());
         }
     }
     
-    private void handlePost(HttpExchange exchange, String path) throws Exception {
-        if (path.equals("/api/bookings")) {
-            String body = readRequestBody(exchange);
-            
-            int userId = extractIntFromJson(body, "userId");
-            int eventId = extractIntFromJson(body, "eventId");
-            int quantity = extractIntFromJson(body, "quantity");
-            
+    // Goes through the event's waiting room, if it has one
+    private Booking book(int userId, int eventId, int quantity, String queueToken) throws Exception {
+        WaitingRoom room = WaitingRoom.get(eventId);
+        if (room == null) {
+            return bookingService.createBooking(userId, eventId, quantity);
+        }
+        try (WaitingRoom.Pass pass = room.admit(queueToken)) {
             Booking booking = bookingService.createBooking(userId, eventId, quantity);
-            
-            String json = convertBookingToJson(booking);
-            sendResponse(exchange, 201, json);
-        } else {
-            sendResponse(exchange, 404, "{\"error\": \"Not found\"}");
+            pass.booked();
+            return booking;
         }
     }
     
-    private void handlePut(HttpExchange exchange, String path) throws Exception {
-        if (path.matches("/api/bookings/\\d+/confirm")) {
-            String[] parts = path.split("/");
-            int bookingId = Integer.parseInt(parts[3]);
-            
-            boolean updated = bookingService.updateBookingStatus(bookingId, "CONFIRMED");
-            
-            if (updated) {
-                sendResponse(exchange, 200, "{\"message\": \"Booking confirmed successfully\"}");
-            } else {
-                sendResponse(exchange, 404, "{\"error\": \"Booking not found\"}");
+    private void createBatch(HttpExchange exchange, PathParams params) throws Exception {
+        JsonBody body = readBody(exchange);
+        
+        int userId = body.getInt("userId");
+        List<Object> items = body.getList("items");
+        int[] eventIds = new int[items.size()];
+        int[] quantities = new int[items.size()];
+        for (int i = 0; i < items.size(); i++) {
+            if (!(items.get(i) instanceof JsonBody)) {
+                throw new JsonException(400, "Each item must be an object with eventId and quantity");
             }
-        }
-        else if (path.matches("/api/bookings/\\d+/cancel")) {
-            String[] parts = path.split("/");
-            int bookingId = Integer.parseInt(parts[3]);
-            
-            boolean updated = bookingService.updateBookingStatus(bookingId, "CANCELLED");
-            
-            if (updated) {
-                sendResponse(exchange, 200, "{\"message\": \"Booking cancelled successfully\"}");
-            } else {
-                sendResponse(exchange, 404, "{\"error\": \"Booking not found\"}");
+            JsonBody item = (JsonBody) items.get(i);
+            eventIds[i] = item.getInt("eventId");
+            quantities[i] = item.getInt("quantity");
+            if (WaitingRoom.get(eventIds[i]) != null) {
+                throw new JsonException(409, "Event " + eventIds[i] + " has a waiting room; book it with POST /api/bookings");
             }
         }
-        else {
-            sendResponse(exchange, 404, "{\"error\": \"Not found\"}");
+        
+        List<Booking> bookings = bookingService.createBatchBooking(userId, eventIds, quantities);
+        
+        JsonWriter response = JsonWriter.local().beginObject().name("data").beginArray();
+        for (Booking booking : bookings) {
+            ModelJson.write(response, booking);
         }
+        sendResponse(exchange, 201, response.endArray().endObject());
     }
     
-    private void handleDelete(HttpExchange exchange, String path) throws Exception {
-        if (path.matches("/api/bookings/\\d+")) {
-            int bookingId = extractIdFromPath(path);
-            boolean deleted = bookingService.deleteBooking(bookingId);
-            
-            if (deleted) {
-                sendResponse(exchange, 200, "{\"message\": \"Booking deleted successfully\"}");
-            } else {
-                sendResponse(exchange, 404, "{\"error\": \"Booking not found\"}");
-            }
+    private void confirm(HttpExchange exchange, PathParams params) throws Exception {
+        boolean updated = bookingService.updateBookingStatus(params.getInt("id"), "CONFIRMED");
+        
+        if (updated) {
+            sendResponse(exchange, 200, "{\"message\": \"Booking confirmed successfully\"}");
         } else {
-            sendResponse(exchange, 404, "{\"error\": \"Not found\"}");
+            sendResponse(exchange, 404, "{\"error\": \"Booking not found\"}");
         }
     }
     
-    private int extractIdFromPath(String path) {
-        return Integer.parseInt(path.substring(path.lastIndexOf('/') + 1));
-    }
-    
-    private String readRequestBody(HttpExchange exchange) throws IOException {
-        InputStream is = exchange.getRequestBody();
-        BufferedReader reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8));
-        StringBuilder body = new StringBuilder();
-        String line;
-        while ((line = reader.readLine()) != null) {
-            body.append(line);
+    private void cancel(HttpExchange exchange, PathParams params) throws Exception {
+        boolean updated = bookingService.updateBookingStatus(params.getInt("id"), "CANCELLED");
+        
+        if (updated) {
+            sendResponse(exchange, 200, "{\"message\": \"Booking cancelled successfully\"}");
+        } else {
+            sendResponse(exchange, 404, "{\"error\": \"Booking not found\"}");
         }
-        return body.toString();
     }
     
-    private int extractIntFromJson(String json, String key) {
-        String pattern = "\"" + key + "\"\\s*:\\s*(\\d+)";
-        java.util.regex.Pattern p = java.util.regex.Pattern.compile(pattern);
-        java.util.regex.Matcher m = p.matcher(json);
-        if (m.find()) {
-            return Integer.parseInt(m.group(1));
+    private void delete(HttpExchange exchange, PathParams params) throws Exception {
+        boolean deleted = bookingService.deleteBooking(params.getInt("id"));
+        
+        if (deleted) {
+            sendResponse(exchange, 200, "{\"message\": \"Booking deleted successfully\"}");
+        } else {
+            sendResponse(exchange, 404, "{\"error\": \"Booking not found\"}");
         }
-        throw new IllegalArgumentException("Missing field: " + key);
     }
     
-    private String convertBookingToJson(Booking b) {
-        return String.format(
-            "{\"bookingId\":%d,\"userId\":%d,\"eventId\":%d,\"bookingCode\":\"%s\",\"quantity\":%d,\"totalPrice\":%.2f,\"status\":\"%s\",\"paymentMethod\":%s,\"bookingDate\":\"%s\",\"paymentDate\":%s}",
-            b.getBookingId(), b.getUserId(), b.getEventId(), b.getBookingCode(),
-            b.getQuantity(), b.getTotalPrice(), b.getStatus(),
-            b.getPaymentMethod() != null ? "\"" + b.getPaymentMethod() + "\"" : "null",
-            b.getBookingDate(),
-            b.getPaymentDate() != null ? "\"" + b.getPaymentDate() + "\"" : "null"
-        );
+    private PageRequest pageRequest(HttpExchange exchange) {
+        Map<String, String> query = QueryString.parse(exchange.getRequestURI().getRawQuery());
+        return PageRequest.of(query.get("limit"), query.get("after"));
     }
     
-    private String convertBookingsToJson(List<Booking> bookings) {
-        StringBuilder json = new StringBuilder("[");
-        for (int i = 0; i < bookings.size(); i++) {
-            json.append(convertBookingToJson(bookings.get(i)));
-            if (i < bookings.size() - 1) json.append(",");
-        }
-        json.append("]");
-        return json.toString();
+    private JsonBody readBody(HttpExchange exchange) throws IOException {
+        return JsonBody.read(exchange.getRequestBody(), exchange.getRequestHeaders().getFirst("Content-Length"));
     }
     
     private void sendResponse(HttpExchange exchange, int statusCode, String response) throws IOException {
@@ -203,4 +194,20 @@ public class BookingController implements HttpHandler {
         os.write(bytes);
         os.close();
     }
-}
\ No newline at end of file
+    
+    private void sendResponse(HttpExchange exchange, int statusCode, byte[] response) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+        exchange.sendResponseHeaders(statusCode, response.length);
+        OutputStream os = exchange.getResponseBody();
+        os.write(response);
+        os.close();
+    }
+    
+    private void sendResponse(HttpExchange exchange, int statusCode, JsonWriter response) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+        exchange.sendResponseHeaders(statusCode, response.size());
+        OutputStream os = exchange.getResponseBody();
+        response.writeTo(os);
+        os.close();
+    }
+}
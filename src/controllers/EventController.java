@@ -1,215 +1,177 @@
 package controllers;
 
 import com.sun.net.httpserver.HttpExchange;
-import com.sun.net.httpserver.HttpHandler;
+import config.AppConfig;
+import dao.PageRequest;
+import json.JsonBody;
+import json.JsonWriter;
+import json.ModelJson;
+import server.AvailabilityPublisher;
+import server.ConditionalGet;
+import server.HttpServer;
+import server.JsonPageStream;
+import server.PathParams;
+import server.QueryString;
+import server.WaitingRoom;
 import services.EventService;
 import models.Event;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
-import java.util.List;
+import java.util.Map;
 
-public class EventController implements HttpHandler {
+public class EventController {
     private EventService eventService;
     
     public EventController() {
         this.eventService = new EventService();
     }
     
-    @Override
-    public void handle(HttpExchange exchange) throws IOException {
-        // Enable CORS
-        exchange.getResponseHeaders().add("Access-Control-Allow-Origin", "*");
-        exchange.getResponseHeaders().add("Access-Control-Allow-Methods", "GET, POST, PUT, DELETE, OPTIONS");
-        exchange.getResponseHeaders().add("Access-Control-Allow-Headers", "Content-Type");
+    public void register(HttpServer server) {
+        server.get("/api/events", this::getAll);
+        server.get("/api/events/{id}", this::getById);
+        server.post("/api/events", this::create);
+        server.put("/api/events/{id}", this::update);
+        server.delete("/api/events/{id}", this::delete);
+        server.get("/api/events/{id}/availability/stream", this::streamAvailability);
+        server.get("/api/events/{id}/waiting-room", this::getWaitingRoom);
+        server.put("/api/events/{id}/waiting-room", this::openWaitingRoom);
+        server.delete("/api/events/{id}/waiting-room", this::closeWaitingRoom);
+    }
+    
+    private void getAll(HttpExchange exchange, PathParams params) throws Exception {
+        PageRequest page = pageRequest(exchange);
+        JsonPageStream.send(exchange, out -> eventService.streamAllEvents(page,
+                versions -> out.revalidate(ConditionalGet.eventsPageETag(versions)),
+                e -> out.write(ModelJson.encode(e))));
+    }
+    
+    private void getById(HttpExchange exchange, PathParams params) throws Exception {
+        // Usually from the event cache, so a 304 costs no query and no encoding
+        Event event = eventService.getEventById(params.getInt("id"));
         
-        if (exchange.getRequestMethod().equalsIgnoreCase("OPTIONS")) {
-            exchange.sendResponseHeaders(204, -1);
-            return;
+        if (event != null) {
+            if (ConditionalGet.notModified(exchange, ConditionalGet.etag(event), ConditionalGet.lastModified(event))) {
+                return;
+            }
+            sendResponse(exchange, 200, ModelJson.encode(event));
+        } else {
+            sendResponse(exchange, 404, "{\"error\": \"Event not found\"}");
         }
+    }
+    
+    private void create(HttpExchange exchange, PathParams params) throws Exception {
+        JsonBody body = readBody(exchange);
         
-        String method = exchange.getRequestMethod();
-        String path = exchange.getRequestURI().getPath();
+        int organizerId = body.getInt("organizerId");
+        String eventName = body.getString("eventName");
+        String description = body.getString("description");
+        String eventDate = body.getString("eventDate");
+        String location = body.getString("location");
+        int totalCapacity = body.getInt("totalCapacity");
+        double ticketPrice = body.getDecimal("ticketPrice").doubleValue();
+        String bookingStrategy = body.optString("bookingStrategy");
         
-        try {
-            if (method.equals("GET")) {
-                handleGet(exchange, path);
-            } else if (method.equals("POST")) {
-                handlePost(exchange, path);
-            } else if (method.equals("PUT")) {
-                handlePut(exchange, path);
-            } else if (method.equals("DELETE")) {
-                handleDelete(exchange, path);
-            } else {
-                sendResponse(exchange, 405, "{\"error\": \"Method not allowed\"}");
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-            sendResponse(exchange, 500, "{\"error\": \"" + e.getMessage() + "\"}");
-        }
+        Event event = eventService.createEvent(organizerId, eventName, description,
+                                               eventDate, location, totalCapacity, ticketPrice,
+                                               bookingStrategy);
+        
+        sendResponse(exchange, 201, ModelJson.encode(event));
     }
     
-    private void handleGet(HttpExchange exchange, String path) throws Exception {
-        if (path.equals("/api/events")) {
-            // GET all events
-            List<Event> events = eventService.getAllEvents();
-            String json = convertEventsToJson(events);
-            sendResponse(exchange, 200, json);
-        } 
-        else if (path.matches("/api/events/\\d+")) {
-            // GET event by ID
-            int eventId = extractIdFromPath(path);
-            Event event = eventService.getEventById(eventId);
-            
-            if (event != null) {
-                String json = convertEventToJson(event);
-                sendResponse(exchange, 200, json);
-            } else {
-                sendResponse(exchange, 404, "{\"error\": \"Event not found\"}");
-            }
+    private void update(HttpExchange exchange, PathParams params) throws Exception {
+        JsonBody body = readBody(exchange);
+        
+        Event event = new Event();
+        event.setEventId(params.getInt("id"));
+        
+        // Optional fields
+        if (body.has("eventName")) {
+            event.setEventName(body.optString("eventName"));
         }
-        else {
-            sendResponse(exchange, 404, "{\"error\": \"Not found\"}");
+        if (body.has("description")) {
+            event.setDescription(body.optString("description"));
         }
-    }
-    
-    private void handlePost(HttpExchange exchange, String path) throws Exception {
-        if (path.equals("/api/events")) {
-            String body = readRequestBody(exchange);
-            
-            int organizerId = extractIntFromJson(body, "organizerId");
-            String eventName = extractStringFromJson(body, "eventName");
-            String description = extractStringFromJson(body, "description");
-            String eventDate = extractStringFromJson(body, "eventDate");
-            String location = extractStringFromJson(body, "location");
-            int totalCapacity = extractIntFromJson(body, "totalCapacity");
-            double ticketPrice = extractDoubleFromJson(body, "ticketPrice");
-            
-            Event event = eventService.createEvent(organizerId, eventName, description, 
-                                                   eventDate, location, totalCapacity, ticketPrice);
-            
-            String json = convertEventToJson(event);
-            sendResponse(exchange, 201, json);
-        } else {
-            sendResponse(exchange, 404, "{\"error\": \"Not found\"}");
+        if (body.has("location")) {
+            event.setLocation(body.optString("location"));
         }
-    }
-    
-    private void handlePut(HttpExchange exchange, String path) throws Exception {
-        if (path.matches("/api/events/\\d+")) {
-            int eventId = extractIdFromPath(path);
-            String body = readRequestBody(exchange);
-            
-            Event event = new Event();
-            event.setEventId(eventId);
-            
-            // Optional fields
-            if (body.contains("eventName")) {
-                event.setEventName(extractStringFromJson(body, "eventName"));
-            }
-            if (body.contains("description")) {
-                event.setDescription(extractStringFromJson(body, "description"));
-            }
-            if (body.contains("location")) {
-                event.setLocation(extractStringFromJson(body, "location"));
-            }
-            if (body.contains("ticketPrice")) {
-                event.setTicketPrice(new java.math.BigDecimal(extractDoubleFromJson(body, "ticketPrice")));
-            }
-            if (body.contains("status")) {
-                event.setStatus(extractStringFromJson(body, "status"));
-            }
-            
-            boolean updated = eventService.updateEvent(event);
-            
-            if (updated) {
-                sendResponse(exchange, 200, "{\"message\": \"Event updated successfully\"}");
-            } else {
-                sendResponse(exchange, 404, "{\"error\": \"Event not found\"}");
-            }
+        if (body.has("ticketPrice")) {
+            event.setTicketPrice(body.getDecimal("ticketPrice"));
+        }
+        if (body.has("status")) {
+            event.setStatus(body.optString("status"));
+        }
+        if (body.has("bookingStrategy")) {
+            event.setBookingStrategy(body.optString("bookingStrategy"));
+        }
+        
+        boolean updated = eventService.updateEvent(event);
+        
+        if (updated) {
+            sendResponse(exchange, 200, "{\"message\": \"Event updated successfully\"}");
         } else {
-            sendResponse(exchange, 404, "{\"error\": \"Not found\"}");
+            sendResponse(exchange, 404, "{\"error\": \"Event not found\"}");
         }
     }
     
-    private void handleDelete(HttpExchange exchange, String path) throws Exception {
-        if (path.matches("/api/events/\\d+")) {
-            int eventId = extractIdFromPath(path);
-            boolean deleted = eventService.deleteEvent(eventId);
-            
-            if (deleted) {
-                sendResponse(exchange, 200, "{\"message\": \"Event deleted successfully\"}");
-            } else {
-                sendResponse(exchange, 404, "{\"error\": \"Event not found\"}");
-            }
+    private void delete(HttpExchange exchange, PathParams params) throws Exception {
+        boolean deleted = eventService.deleteEvent(params.getInt("id"));
+        
+        if (deleted) {
+            WaitingRoom.close(params.getInt("id"));
+            sendResponse(exchange, 200, "{\"message\": \"Event deleted successfully\"}");
         } else {
-            sendResponse(exchange, 404, "{\"error\": \"Not found\"}");
+            sendResponse(exchange, 404, "{\"error\": \"Event not found\"}");
         }
     }
     
-    private int extractIdFromPath(String path) {
-        return Integer.parseInt(path.substring(path.lastIndexOf('/') + 1));
-    }
-    
-    private String readRequestBody(HttpExchange exchange) throws IOException {
-        InputStream is = exchange.getRequestBody();
-        BufferedReader reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8));
-        StringBuilder body = new StringBuilder();
-        String line;
-        while ((line = reader.readLine()) != null) {
-            body.append(line);
-        }
-        return body.toString();
+    // Server-Sent Events; the exchange stays open after this returns
+    private void streamAvailability(HttpExchange exchange, PathParams params) throws Exception {
+        AvailabilityPublisher.getInstance().subscribe(params.getInt("id"), exchange);
     }
     
-    private int extractIntFromJson(String json, String key) {
-        String pattern = "\"" + key + "\"\\s*:\\s*(\\d+)";
-        java.util.regex.Pattern p = java.util.regex.Pattern.compile(pattern);
-        java.util.regex.Matcher m = p.matcher(json);
-        if (m.find()) {
-            return Integer.parseInt(m.group(1));
+    private void getWaitingRoom(HttpExchange exchange, PathParams params) throws Exception {
+        WaitingRoom room = WaitingRoom.get(params.getInt("id"));
+        
+        if (room != null) {
+            sendResponse(exchange, 200, room.describe(JsonWriter.local()));
+        } else {
+            sendResponse(exchange, 404, "{\"error\": \"Event has no waiting room\"}");
         }
-        throw new IllegalArgumentException("Missing field: " + key);
     }
     
-    private double extractDoubleFromJson(String json, String key) {
-        String pattern = "\"" + key + "\"\\s*:\\s*([\\d.]+)";
-        java.util.regex.Pattern p = java.util.regex.Pattern.compile(pattern);
-        java.util.regex.Matcher m = p.matcher(json);
-        if (m.find()) {
-            return Double.parseDouble(m.group(1));
+    private void openWaitingRoom(HttpExchange exchange, PathParams params) throws Exception {
+        JsonBody body = readBody(exchange);
+        int eventId = params.getInt("id");
+        
+        int admissionRate = body.getInt("admissionRate");
+        int maxConcurrency = body.has("maxConcurrency")
+            ? body.getInt("maxConcurrency")
+            : AppConfig.getInt("WAITING_ROOM_MAX_CONCURRENCY", 8);
+        
+        if (eventService.getEventById(eventId) == null) {
+            sendResponse(exchange, 404, "{\"error\": \"Event not found\"}");
+            return;
         }
-        throw new IllegalArgumentException("Missing field: " + key);
+        WaitingRoom room = WaitingRoom.open(eventId, admissionRate, maxConcurrency);
+        sendResponse(exchange, 200, room.describe(JsonWriter.local()));
     }
     
-    private String extractStringFromJson(String json, String key) {
-        String pattern = "\"" + key + "\"\\s*:\\s*\"([^\"]+)\"";
-        java.util.regex.Pattern p = java.util.regex.Pattern.compile(pattern);
-        java.util.regex.Matcher m = p.matcher(json);
-        if (m.find()) {
-            return m.group(1);
+    private void closeWaitingRoom(HttpExchange exchange, PathParams params) throws Exception {
+        if (WaitingRoom.close(params.getInt("id"))) {
+            sendResponse(exchange, 200, "{\"message\": \"Waiting room closed\"}");
+        } else {
+            sendResponse(exchange, 404, "{\"error\": \"Event has no waiting room\"}");
         }
-        throw new IllegalArgumentException("Missing field: " + key);
     }
     
-    private String convertEventToJson(Event e) {
-        return String.format(
-            "{\"eventId\":%d,\"organizerId\":%d,\"eventName\":\"%s\",\"description\":\"%s\",\"eventDate\":\"%s\",\"location\":\"%s\",\"totalCapacity\":%d,\"availableTickets\":%d,\"ticketPrice\":%.2f,\"status\":\"%s\"}",
-            e.getEventId(), e.getOrganizerId(), e.getEventName(), 
-            e.getDescription() != null ? e.getDescription() : "",
-            e.getEventDate(), e.getLocation(), e.getTotalCapacity(), 
-            e.getAvailableTickets(), e.getTicketPrice(), e.getStatus()
-        );
+    private PageRequest pageRequest(HttpExchange exchange) {
+        Map<String, String> query = QueryString.parse(exchange.getRequestURI().getRawQuery());
+        return PageRequest.of(query.get("limit"), query.get("after"));
     }
     
-    private String convertEventsToJson(List<Event> events) {
-        StringBuilder json = new StringBuilder("[");
-        for (int i = 0; i < events.size(); i++) {
-            json.append(convertEventToJson(events.get(i)));
-            if (i < events.size() - 1) json.append(",");
-        }
-        json.append("]");
-        return json.toString();
+    private JsonBody readBody(HttpExchange exchange) throws IOException {
+        return JsonBody.read(exchange.getRequestBody(), exchange.getRequestHeaders().getFirst("Content-Length"));
     }
     
     private void sendResponse(HttpExchange exchange, int statusCode, String response) throws IOException {
@@ -220,4 +182,12 @@ public class EventController implements HttpHandler {
         os.write(bytes);
         os.close();
     }
-}
\ No newline at end of file
+    
+    private void sendResponse(HttpExchange exchange, int statusCode, JsonWriter response) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+        exchange.sendResponseHeaders(statusCode, response.size());
+        OutputStream os = exchange.getResponseBody();
+        response.writeTo(os);
+        os.close();
+    }
+}
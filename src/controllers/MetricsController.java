@@ -0,0 +1,61 @@
+package controllers;
+
+import com.sun.net.httpserver.HttpExchange;
+import config.DatabaseConfig;
+import dao.EventCache;
+import metrics.Metrics;
+import server.HttpServer;
+import server.PathParams;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+public class MetricsController {
+    
+    public MetricsController() {
+        // Pool and cache keep their own counters; these are read only on scrape
+        Metrics.gauge("db_pool_connections", "Pooled connections by state.", "state=\"active\"",
+                      () -> DatabaseConfig.getPoolStats().getActive());
+        Metrics.gauge("db_pool_connections", "Pooled connections by state.", "state=\"idle\"",
+                      () -> DatabaseConfig.getPoolStats().getIdle());
+        Metrics.gauge("db_pool_waiters", "Threads waiting for a pooled connection.", "",
+                      () -> DatabaseConfig.getPoolStats().getWaiters());
+        Metrics.counterFunction("db_pool_acquire_total", "Connections handed out by the pool.", "",
+                                () -> DatabaseConfig.getPoolStats().getAcquireCount());
+        Metrics.counterFunction("db_pool_timeouts_total", "Acquires that timed out.", "",
+                                () -> DatabaseConfig.getPoolStats().getTimeouts());
+        Metrics.counterFunction("db_reads_total", "Read connections handed out by target.", "target=\"primary\"",
+                                DatabaseConfig::getPrimaryReads);
+        for (int i = 0; i < DatabaseConfig.getReplicaCount(); i++) {
+            int replica = i;
+            String labels = "replica=\"" + i + "\"";
+            Metrics.counterFunction("db_reads_total", "Read connections handed out by target.", "target=\"replica\"," + labels,
+                                    () -> DatabaseConfig.getReplicaReads(replica));
+            Metrics.gauge("db_replica_up", "1 while the replica passes its health check.", labels,
+                          () -> DatabaseConfig.isReplicaHealthy(replica) ? 1 : 0);
+            Metrics.gauge("db_replica_lag_seconds", "Replication lag at the last health check (-1 unknown).", labels,
+                          () -> DatabaseConfig.getReplicaLagSec(replica));
+            Metrics.gauge("db_replica_pool_connections", "Pooled replica connections by state.", labels + ",state=\"active\"",
+                          () -> DatabaseConfig.getReplicaPoolStats(replica).getActive());
+        }
+        Metrics.counterFunction("event_cache_hits_total", "Event cache hits.", "",
+                                () -> EventCache.getInstance().getHits());
+        Metrics.counterFunction("event_cache_misses_total", "Event cache misses.", "",
+                                () -> EventCache.getInstance().getMisses());
+        Metrics.gauge("event_cache_size", "Events currently cached.", "",
+                      () -> EventCache.getInstance().size());
+    }
+    
+    public void register(HttpServer server) {
+        server.get("/api/metrics", this::scrape);
+    }
+    
+    private void scrape(HttpExchange exchange, PathParams params) throws IOException {
+        byte[] bytes = Metrics.scrape().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=UTF-8");
+        exchange.sendResponseHeaders(200, bytes.length);
+        OutputStream os = exchange.getResponseBody();
+        os.write(bytes);
+        os.close();
+    }
+}
@@ -1,192 +1,130 @@
 package controllers;
 
 import com.sun.net.httpserver.HttpExchange;
-import com.sun.net.httpserver.HttpHandler;
+import dao.PageRequest;
+import json.JsonBody;
+import json.JsonWriter;
+import json.ModelJson;
+import server.ConditionalGet;
+import server.HttpServer;
+import server.JsonPageStream;
+import server.PathParams;
+import server.QueryString;
 import services.UserService;
 import models.User;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
-import java.util.List;
+import java.sql.Timestamp;
+import java.util.Map;
 
-public class UserController implements HttpHandler {
+public class UserController {
     private UserService userService;
     
     public UserController() {
         this.userService = new UserService();
     }
     
-    @Override
-    public void handle(HttpExchange exchange) throws IOException {
-        // Enable CORS
-        exchange.getResponseHeaders().add("Access-Control-Allow-Origin", "*");
-        exchange.getResponseHeaders().add("Access-Control-Allow-Methods", "GET, POST, PUT, DELETE, OPTIONS");
-        exchange.getResponseHeaders().add("Access-Control-Allow-Headers", "Content-Type");
-        
-        if (exchange.getRequestMethod().equalsIgnoreCase("OPTIONS")) {
-            exchange.sendResponseHeaders(204, -1);
-            return;
-        }
-        
-        String method = exchange.getRequestMethod();
-        String path = exchange.getRequestURI().getPath();
-        
-        try {
-            if (method.equals("GET")) {
-                handleGet(exchange, path);
-            } else if (method.equals("POST")) {
-                handlePost(exchange, path);
-            } else if (method.equals("PUT")) {
-                handlePut(exchange, path);
-            } else if (method.equals("DELETE")) {
-                handleDelete(exchange, path);
-            } else {
-                sendResponse(exchange, 405, "{\"error\": \"Method not allowed\"}");
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-            sendResponse(exchange, 500, "{\"error\": \"" + e.getMessage() + "\"}");
-        }
+    public void register(HttpServer server) {
+        server.get("/api/users", this::getAll);
+        server.get("/api/users/{id}", this::getById);
+        server.post("/api/users", this::create);
+        server.put("/api/users/{id}", this::update);
+        server.delete("/api/users/{id}", this::delete);
     }
     
-    private void handleGet(HttpExchange exchange, String path) throws Exception {
-        if (path.equals("/api/users")) {
-            // GET all users
-            List<User> users = userService.getAllUsers();
-            String json = convertUsersToJson(users);
-            sendResponse(exchange, 200, json);
-        } 
-        else if (path.matches("/api/users/\\d+")) {
-            // GET user by ID
-            int userId = extractIdFromPath(path);
-            User user = userService.getUserById(userId);
-            
-            if (user != null) {
-                String json = convertUserToJson(user);
-                sendResponse(exchange, 200, json);
-            } else {
-                sendResponse(exchange, 404, "{\"error\": \"User not found\"}");
-            }
-        }
-        else {
-            sendResponse(exchange, 404, "{\"error\": \"Not found\"}");
-        }
+    private void getAll(HttpExchange exchange, PathParams params) throws Exception {
+        PageRequest page = pageRequest(exchange);
+        JsonPageStream.send(exchange, out -> userService.streamAllUsers(page,
+                versions -> out.revalidate(ConditionalGet.usersPageETag(versions)),
+                u -> out.write(ModelJson.encode(u))));
     }
     
-    private void handlePost(HttpExchange exchange, String path) throws Exception {
-        if (path.equals("/api/users")) {
-            String body = readRequestBody(exchange);
-            
-            String username = extractStringFromJson(body, "username");
-            String email = extractStringFromJson(body, "email");
-            String password = extractStringFromJson(body, "password");
-            String fullName = extractStringFromJson(body, "fullName");
-            String phone = extractStringFromJson(body, "phone");
-            String role = extractStringFromJson(body, "role");
-            
-            User user = userService.createUser(username, email, password, fullName, phone, role);
-            
-            String json = convertUserToJson(user);
-            sendResponse(exchange, 201, json);
-        } else {
-            sendResponse(exchange, 404, "{\"error\": \"Not found\"}");
-        }
-    }
-    
-    private void handlePut(HttpExchange exchange, String path) throws Exception {
-        if (path.matches("/api/users/\\d+")) {
-            int userId = extractIdFromPath(path);
-            String body = readRequestBody(exchange);
-            
-            User user = new User();
-            user.setUserId(userId);
-            
-            // Optional fields
-            if (body.contains("username")) {
-                user.setUsername(extractStringFromJson(body, "username"));
-            }
-            if (body.contains("email")) {
-                user.setEmail(extractStringFromJson(body, "email"));
-            }
-            if (body.contains("fullName")) {
-                user.setFullName(extractStringFromJson(body, "fullName"));
-            }
-            if (body.contains("phone")) {
-                user.setPhone(extractStringFromJson(body, "phone"));
-            }
-            if (body.contains("password")) {
-                user.setPassword(extractStringFromJson(body, "password"));
-            }
-            
-            boolean updated = userService.updateUser(user);
-            
-            if (updated) {
-                sendResponse(exchange, 200, "{\"message\": \"User updated successfully\"}");
-            } else {
-                sendResponse(exchange, 404, "{\"error\": \"User not found\"}");
+    private void getById(HttpExchange exchange, PathParams params) throws Exception {
+        int userId = params.getInt("id");
+        
+        // Revalidation reads only updated_at
+        if (ConditionalGet.isConditional(exchange)) {
+            Timestamp updatedAt = userService.getUserUpdatedAt(userId);
+            if (updatedAt != null && ConditionalGet.notModified(exchange, ConditionalGet.etag(userId, updatedAt), updatedAt)) {
+                return;
             }
-        } else {
-            sendResponse(exchange, 404, "{\"error\": \"Not found\"}");
         }
-    }
-    
-    private void handleDelete(HttpExchange exchange, String path) throws Exception {
-        if (path.matches("/api/users/\\d+")) {
-            int userId = extractIdFromPath(path);
-            boolean deleted = userService.deleteUser(userId);
-            
-            if (deleted) {
-                sendResponse(exchange, 200, "{\"message\": \"User deleted successfully\"}");
-            } else {
-                sendResponse(exchange, 404, "{\"error\": \"User not found\"}");
-            }
+        
+        User user = userService.getUserById(userId);
+        
+        if (user != null) {
+            ConditionalGet.setValidators(exchange, ConditionalGet.etag(userId, user.getUpdatedAt()), user.getUpdatedAt());
+            sendResponse(exchange, 200, ModelJson.encode(user));
         } else {
-            sendResponse(exchange, 404, "{\"error\": \"Not found\"}");
+            sendResponse(exchange, 404, "{\"error\": \"User not found\"}");
         }
     }
     
-    private int extractIdFromPath(String path) {
-        return Integer.parseInt(path.substring(path.lastIndexOf('/') + 1));
+    private void create(HttpExchange exchange, PathParams params) throws Exception {
+        JsonBody body = readBody(exchange);
+        
+        String username = body.getString("username");
+        String email = body.getString("email");
+        String password = body.getString("password");
+        String fullName = body.getString("fullName");
+        String phone = body.getString("phone");
+        String role = body.getString("role");
+        
+        User user = userService.createUser(username, email, password, fullName, phone, role);
+        
+        sendResponse(exchange, 201, ModelJson.encode(user));
     }
     
-    private String readRequestBody(HttpExchange exchange) throws IOException {
-        InputStream is = exchange.getRequestBody();
-        BufferedReader reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8));
-        StringBuilder body = new StringBuilder();
-        String line;
-        while ((line = reader.readLine()) != null) {
-            body.append(line);
+    private void update(HttpExchange exchange, PathParams params) throws Exception {
+        JsonBody body = readBody(exchange);
+        
+        User user = new User();
+        user.setUserId(params.getInt("id"));
+        
+        // Optional fields
+        if (body.has("username")) {
+            user.setUsername(body.optString("username"));
+        }
+        if (body.has("email")) {
+            user.setEmail(body.optString("email"));
+        }
+        if (body.has("fullName")) {
+            user.setFullName(body.optString("fullName"));
+        }
+        if (body.has("phone")) {
+            user.setPhone(body.optString("phone"));
+        }
+        if (body.has("password")) {
+            user.setPassword(body.optString("password"));
+        }
+        
+        boolean updated = userService.updateUser(user);
+        
+        if (updated) {
+            sendResponse(exchange, 200, "{\"message\": \"User updated successfully\"}");
+        } else {
+            sendResponse(exchange, 404, "{\"error\": \"User not found\"}");
         }
-        return body.toString();
     }
     
-    private String extractStringFromJson(String json, String key) {
-        String pattern = "\"" + key + "\"\\s*:\\s*\"([^\"]+)\"";
-        java.util.regex.Pattern p = java.util.regex.Pattern.compile(pattern);
-        java.util.regex.Matcher m = p.matcher(json);
-        if (m.find()) {
-            return m.group(1);
+    private void delete(HttpExchange exchange, PathParams params) throws Exception {
+        boolean deleted = userService.deleteUser(params.getInt("id"));
+        
+        if (deleted) {
+            sendResponse(exchange, 200, "{\"message\": \"User deleted successfully\"}");
+        } else {
+            sendResponse(exchange, 404, "{\"error\": \"User not found\"}");
         }
-        throw new IllegalArgumentException("Missing field: " + key);
     }
     
-    private String convertUserToJson(User u) {
-        return String.format(
-            "{\"userId\":%d,\"username\":\"%s\",\"email\":\"%s\",\"fullName\":\"%s\",\"phone\":\"%s\",\"role\":\"%s\",\"createdAt\":\"%s\"}",
-            u.getUserId(), u.getUsername(), u.getEmail(), u.getFullName(),
-            u.getPhone() != null ? u.getPhone() : "", u.getRole(),
-            u.getCreatedAt()
-        );
+    private PageRequest pageRequest(HttpExchange exchange) {
+        Map<String, String> query = QueryString.parse(exchange.getRequestURI().getRawQuery());
+        return PageRequest.of(query.get("limit"), query.get("after"));
     }
     
-    private String convertUsersToJson(List<User> users) {
-        StringBuilder json = new StringBuilder("[");
-        for (int i = 0; i < users.size(); i++) {
-            json.append(convertUserToJson(users.get(i)));
-            if (i < users.size() - 1) json.append(",");
-        }
-        json.append("]");
-        return json.toString();
+    private JsonBody readBody(HttpExchange exchange) throws IOException {
+        return JsonBody.read(exchange.getRequestBody(), exchange.getRequestHeaders().getFirst("Content-Length"));
     }
     
     private void sendResponse(HttpExchange exchange, int statusCode, String response) throws IOException {
@@ -197,4 +135,12 @@ public class UserController implements HttpHandler {
         os.write(bytes);
         os.close();
     }
-}
\ No newline at end of file
+    
+    private void sendResponse(HttpExchange exchange, int statusCode, JsonWriter response) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+        exchange.sendResponseHeaders(statusCode, response.size());
+        OutputStream os = exchange.getResponseBody();
+        response.writeTo(os);
+        os.close();
+    }
+}
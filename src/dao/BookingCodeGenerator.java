@@ -0,0 +1,78 @@
+package dao;
+
+import config.AppConfig;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Snowflake-style booking codes: 41 bits of milliseconds since 2024-01-01,
+ * 10 bits of node id (BOOKING_NODE_ID, 0-1023) and a 12-bit sequence per
+ * millisecond, so one node can issue 4096 codes per ms without repeating.
+ *
+ * The last (millisecond, sequence) pair lives in one AtomicLong and is
+ * advanced with CAS, so generating never locks or sleeps. When a
+ * millisecond's sequence is used up, or the clock steps backwards, the
+ * generator keeps counting from its last value instead of waiting for the
+ * clock; codes stay unique and increasing either way.
+ *
+ * Codes are "BK" plus the id as 13 Crockford base32 digits (15 characters).
+ * Fixed width and an ASCII-ordered alphabet make them sort by issue time, so
+ * inserts land at the right edge of the booking_code index.
+ */
+public final class BookingCodeGenerator {
+    private static final long EPOCH_MS = 1704067200000L; // 2024-01-01T00:00:00Z
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    public static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+
+    private static final char[] BASE32 = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final int DIGITS = 13; // ceil(63 / 5)
+
+    private static final BookingCodeGenerator DEFAULT =
+        new BookingCodeGenerator(AppConfig.getInt("BOOKING_NODE_ID", 0));
+
+    private final long node;
+    // (milliseconds since EPOCH_MS << SEQUENCE_BITS) | sequence of the last id
+    private final AtomicLong last = new AtomicLong();
+
+    public static BookingCodeGenerator getDefault() {
+        return DEFAULT;
+    }
+
+    public BookingCodeGenerator(int nodeId) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("BOOKING_NODE_ID must be between 0 and " + MAX_NODE_ID + ": " + nodeId);
+        }
+        this.node = nodeId;
+    }
+
+    public long nextId() {
+        while (true) {
+            long previous = last.get();
+            long now = System.currentTimeMillis() - EPOCH_MS;
+            long next = now > (previous >>> SEQUENCE_BITS)
+                ? now << SEQUENCE_BITS
+                : previous + 1; // same or earlier ms: next sequence, rolling into the next ms when full
+            if (last.compareAndSet(previous, next)) {
+                long millis = next >>> SEQUENCE_BITS;
+                return (millis << (NODE_BITS + SEQUENCE_BITS)) | (node << SEQUENCE_BITS) | (next & SEQUENCE_MASK);
+            }
+        }
+    }
+
+    public String nextCode() {
+        return format(nextId());
+    }
+
+    public static String format(long id) {
+        char[] code = new char[2 + DIGITS];
+        code[0] = 'B';
+        code[1] = 'K';
+        for (int i = code.length - 1; i >= 2; i--) {
+            code[i] = BASE32[(int) (id & 31)];
+            id >>>= 5;
+        }
+        return new String(code);
+    }
+}
@@ -1,27 +1,102 @@
 package dao;
 
 import config.DatabaseConfig;
+import metrics.LatencyHistogram;
+import metrics.Metrics;
 import models.Booking;
+import models.Event;
+import java.io.IOException;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
 
 public class BookingDAO {
     
-    public List<Booking> getAll() throws SQLException {
-        List<Booking> bookings = new ArrayList<>();
-        String sql = "SELECT * FROM bookings ORDER BY created_at DESC";
+    // Where createBookingWithLock spends its time, and why it rolls back
+    private static final String LOCK_PHASE = "booking_lock_phase_seconds";
+    private static final String LOCK_PHASE_HELP = "Phases of the pessimistic booking transaction.";
+    private static final LatencyHistogram LOCK_PHASE_STRIPE = Metrics.histogram(LOCK_PHASE, LOCK_PHASE_HELP, "phase=\"stripe_wait\"");
+    private static final LatencyHistogram LOCK_PHASE_ACQUIRE = Metrics.histogram(LOCK_PHASE, LOCK_PHASE_HELP, "phase=\"connection_acquire\"");
+    private static final LatencyHistogram LOCK_PHASE_WAIT = Metrics.histogram(LOCK_PHASE, LOCK_PHASE_HELP, "phase=\"for_update_wait\"");
+    private static final LatencyHistogram LOCK_PHASE_INSERT = Metrics.histogram(LOCK_PHASE, LOCK_PHASE_HELP, "phase=\"insert\"");
+    private static final LatencyHistogram LOCK_PHASE_UPDATE = Metrics.histogram(LOCK_PHASE, LOCK_PHASE_HELP, "phase=\"update\"");
+    private static final LatencyHistogram LOCK_PHASE_COMMIT = Metrics.histogram(LOCK_PHASE, LOCK_PHASE_HELP, "phase=\"commit\"");
+    
+    private static final String ROLLBACKS = "booking_lock_rollbacks_total";
+    private static final String ROLLBACKS_HELP = "Rolled back pessimistic booking transactions by cause.";
+    private static final LongAdder ROLLBACK_INSUFFICIENT = Metrics.counter(ROLLBACKS, ROLLBACKS_HELP, "cause=\"insufficient_tickets\"");
+    private static final LongAdder ROLLBACK_INACTIVE = Metrics.counter(ROLLBACKS, ROLLBACKS_HELP, "cause=\"inactive_event\"");
+    private static final LongAdder ROLLBACK_NOT_FOUND = Metrics.counter(ROLLBACKS, ROLLBACKS_HELP, "cause=\"event_not_found\"");
+    private static final LongAdder ROLLBACK_SQL_ERROR = Metrics.counter(ROLLBACKS, ROLLBACKS_HELP, "cause=\"sql_error\"");
+    
+    // Keyset-paginated streaming queries, newest first. Rows are handed to the
+    // callback as they arrive; the return value is the cursor for the next
+    // page, or null when this was the last one.
+    public String streamAll(PageRequest page, RowCallback<Booking> callback) throws SQLException, IOException {
+        return streamPage(null, 0, page, callback);
+    }
+    
+    public String streamByUserId(int userId, PageRequest page, RowCallback<Booking> callback) throws SQLException, IOException {
+        return streamPage("user_id", userId, page, callback);
+    }
+    
+    public String streamByEventId(int eventId, PageRequest page, RowCallback<Booking> callback) throws SQLException, IOException {
+        return streamPage("event_id", eventId, page, callback);
+    }
+    
+    // (created_at, booking_id) < (?, ?) is spelled out so MySQL can range-scan
+    // the (filter, created_at, booking_id) index instead of filtering rows
+    private String streamPage(String filterColumn, int filterValue, PageRequest page,
+                              RowCallback<Booking> callback) throws SQLException, IOException {
+        List<String> conditions = new ArrayList<>();
+        if (filterColumn != null) {
+            conditions.add(filterColumn + " = ?");
+        }
+        if (page.hasCursor()) {
+            conditions.add("(created_at < ? OR (created_at = ? AND booking_id < ?))");
+        }
+        StringBuilder sql = new StringBuilder("SELECT * FROM bookings");
+        if (!conditions.isEmpty()) {
+            sql.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+        sql.append(" ORDER BY created_at DESC, booking_id DESC LIMIT ?");
         
-        try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
+        // A user's own list must show the booking they just made
+        try (Connection conn = filterColumn == null
+                 ? DatabaseConfig.getReadConnection()
+                 : DatabaseConfig.getReadConnection(filterColumn.equals("user_id") ? "user" : "event", filterValue);
+             PreparedStatement stmt = DatabaseConfig.prepareStreaming(conn, sql.toString())) {
             
-            ResultSet rs = stmt.executeQuery();
+            int index = 1;
+            if (filterColumn != null) {
+                stmt.setInt(index++, filterValue);
+            }
+            if (page.hasCursor()) {
+                stmt.setTimestamp(index++, page.getAfterKey());
+                stmt.setTimestamp(index++, page.getAfterKey());
+                stmt.setInt(index++, page.getAfterId());
+            }
+            // One extra row tells us whether there is a next page
+            stmt.setInt(index, page.getLimit() + 1);
             
-            while (rs.next()) {
-                bookings.add(mapResultSetToBooking(rs));
+            try (ResultSet rs = stmt.executeQuery()) {
+                Booking last = null;
+                int count = 0;
+                while (rs.next()) {
+                    if (count == page.getLimit()) {
+                        return PageRequest.cursor(last.getCreatedAt(), last.getBookingId());
+                    }
+                    last = mapResultSetToBooking(rs);
+                    callback.handle(last);
+                    count++;
+                }
+                return null;
             }
         }
-        return bookings;
     }
     
     public Booking createBookingWithLock(int userId, int eventId, int quantity) throws SQLException {
@@ -30,10 +105,18 @@ public class BookingDAO {
         PreparedStatement insertStmt = null;
         PreparedStatement updateStmt = null;
         ResultSet rs = null;
+        LongAdder rollbackCause = ROLLBACK_SQL_ERROR;
+        
+        // Wait in the JVM, not holding a connection in InnoDB's lock queue
+        long mark = System.nanoTime();
+        EventLockStripes stripes = EventLockStripes.getDefault();
+        int stripe = stripes.acquire(eventId);
+        mark = LOCK_PHASE_STRIPE.lap(mark);
         
         try {
             conn = DatabaseConfig.getConnection();
             conn.setAutoCommit(false);
+            mark = LOCK_PHASE_ACQUIRE.lap(mark);
             
             // Step 1: SELECT FOR UPDATE - Pessimistic Lock
             String selectSQL = "SELECT event_id, event_name, available_tickets, ticket_price, status " +
@@ -41,8 +124,10 @@ public class BookingDAO {
             selectStmt = conn.prepareStatement(selectSQL);
             selectStmt.setInt(1, eventId);
             rs = selectStmt.executeQuery();
+            mark = LOCK_PHASE_WAIT.lap(mark);
             
             if (!rs.next()) {
+                rollbackCause = ROLLBACK_NOT_FOUND;
                 throw new SQLException("Event not found");
             }
             
@@ -51,10 +136,12 @@ public class BookingDAO {
             java.math.BigDecimal ticketPrice = rs.getBigDecimal("ticket_price");
             
             if (!"ACTIVE".equals(status)) {
+                rollbackCause = ROLLBACK_INACTIVE;
                 throw new SQLException("Event is not active");
             }
             
             if (availableTickets < quantity) {
+                rollbackCause = ROLLBACK_INSUFFICIENT;
                 throw new SQLException("Insufficient tickets. Available: " + availableTickets);
             }
             
@@ -77,6 +164,7 @@ public class BookingDAO {
             if (generatedKeys.next()) {
                 bookingId = generatedKeys.getInt(1);
             }
+            mark = LOCK_PHASE_INSERT.lap(mark);
             
             // Step 3: Update available tickets
             String updateSQL = "UPDATE events SET available_tickets = available_tickets - ? WHERE event_id = ?";
@@ -84,15 +172,19 @@ public class BookingDAO {
             updateStmt.setInt(1, quantity);
             updateStmt.setInt(2, eventId);
             updateStmt.executeUpdate();
+            mark = LOCK_PHASE_UPDATE.lap(mark);
             
             conn.commit();
+            LOCK_PHASE_COMMIT.lap(mark);
             
             Booking booking = new Booking(userId, eventId, bookingCode, quantity, totalPrice);
             booking.setBookingId(bookingId);
+            recordWrite(booking);
             
             return booking;
             
         } catch (SQLException e) {
+            rollbackCause.increment();
             if (conn != null) {
                 try {
                     conn.rollback();
@@ -102,72 +194,374 @@ public class BookingDAO {
             }
             throw e;
         } finally {
-            if (rs != null) rs.close();
-            if (selectStmt != null) selectStmt.close();
-            if (insertStmt != null) insertStmt.close();
-            if (updateStmt != null) updateStmt.close();
-            if (conn != null) {
+            try {
+                if (rs != null) rs.close();
+                if (selectStmt != null) selectStmt.close();
+                if (insertStmt != null) insertStmt.close();
+                if (updateStmt != null) updateStmt.close();
+                if (conn != null) {
+                    conn.setAutoCommit(true);
+                    conn.close();
+                }
+            } finally {
+                stripes.release(stripe);
+            }
+        }
+    }
+    
+    // Books several events for one user in one transaction, all or nothing.
+    // One SELECT ... FOR UPDATE locks every event row (in primary key order, so
+    // two batches can never deadlock), one multi-row INSERT adds the bookings
+    // and one UPDATE decrements all events. Items for the same event are summed.
+    public List<Booking> createBatchWithLock(int userId, int[] eventIds, int[] quantities) throws SQLException {
+        Map<Integer, Integer> perEvent = new TreeMap<>();
+        for (int i = 0; i < eventIds.length; i++) {
+            perEvent.merge(eventIds[i], quantities[i], Integer::sum);
+        }
+        
+        EventLockStripes stripes = EventLockStripes.getDefault();
+        int[] held = stripes.acquireAll(perEvent.keySet());
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                Map<Integer, java.math.BigDecimal> prices = new HashMap<>();
+                try (PreparedStatement stmt = conn.prepareStatement(
+                        "SELECT event_id, available_tickets, ticket_price, status, booking_strategy FROM events " +
+                        "WHERE event_id IN (" + placeholders(perEvent.size()) + ") ORDER BY event_id FOR UPDATE")) {
+                    int index = 1;
+                    for (int eventId : perEvent.keySet()) {
+                        stmt.setInt(index++, eventId);
+                    }
+                    ResultSet rs = stmt.executeQuery();
+                    while (rs.next()) {
+                        int eventId = rs.getInt("event_id");
+                        if (!"ACTIVE".equals(rs.getString("status"))) {
+                            throw new SQLException("Event " + eventId + " is not active");
+                        }
+                        // These keep their tickets outside events.available_tickets
+                        String strategy = rs.getString("booking_strategy");
+                        if ("MEMORY".equals(strategy) || "BUCKETED".equals(strategy)) {
+                            throw new SQLException("Event " + eventId + " uses " + strategy + " inventory and cannot be batch booked");
+                        }
+                        int availableTickets = rs.getInt("available_tickets");
+                        if (availableTickets < perEvent.get(eventId)) {
+                            throw new SQLException("Insufficient tickets for event " + eventId + ". Available: " + availableTickets);
+                        }
+                        prices.put(eventId, rs.getBigDecimal("ticket_price"));
+                    }
+                }
+                for (int eventId : perEvent.keySet()) {
+                    if (!prices.containsKey(eventId)) {
+                        throw new SQLException("Event " + eventId + " not found");
+                    }
+                }
+                
+                List<Booking> bookings = new ArrayList<>(eventIds.length);
+                for (int i = 0; i < eventIds.length; i++) {
+                    java.math.BigDecimal totalPrice = prices.get(eventIds[i]).multiply(new java.math.BigDecimal(quantities[i]));
+                    bookings.add(new Booking(userId, eventIds[i], generateBookingCode(), quantities[i], totalPrice));
+                }
+                insertBookings(conn, bookings);
+                
+                StringBuilder sql = new StringBuilder("UPDATE events SET available_tickets = available_tickets - CASE event_id");
+                for (int i = 0; i < perEvent.size(); i++) {
+                    sql.append(" WHEN ? THEN ?");
+                }
+                sql.append(" END WHERE event_id IN (").append(placeholders(perEvent.size())).append(')');
+                try (PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+                    int index = 1;
+                    for (Map.Entry<Integer, Integer> entry : perEvent.entrySet()) {
+                        stmt.setInt(index++, entry.getKey());
+                        stmt.setInt(index++, entry.getValue());
+                    }
+                    for (int eventId : perEvent.keySet()) {
+                        stmt.setInt(index++, eventId);
+                    }
+                    stmt.executeUpdate();
+                }
+                
+                conn.commit();
+                return bookings;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
                 conn.setAutoCommit(true);
-                conn.close();
             }
+        } finally {
+            stripes.releaseAll(held);
         }
     }
     
-    private String generateBookingCode() {
-        return "BK" + System.currentTimeMillis() + "-" + (int)(Math.random() * 10000);
+    // Optimistic variant: one guarded UPDATE instead of SELECT ... FOR UPDATE.
+    // The row is only locked from the UPDATE to the commit. Returns null when
+    // the guard failed only because the ticket price changed since the caller
+    // read the event, so the caller can re-read and retry.
+    public Booking createBookingConditional(int userId, int eventId, int quantity,
+                                            java.math.BigDecimal ticketPrice) throws SQLException {
+        String updateSQL = "UPDATE events SET available_tickets = available_tickets - ? " +
+                           "WHERE event_id = ? AND status = 'ACTIVE' AND available_tickets >= ? AND ticket_price = ?";
+        String insertSQL = "INSERT INTO bookings (user_id, event_id, booking_code, quantity, total_price, status) " +
+                           "VALUES (?, ?, ?, ?, ?, 'PENDING')";
+        
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                int updated;
+                try (PreparedStatement updateStmt = conn.prepareStatement(updateSQL)) {
+                    updateStmt.setInt(1, quantity);
+                    updateStmt.setInt(2, eventId);
+                    updateStmt.setInt(3, quantity);
+                    updateStmt.setBigDecimal(4, ticketPrice);
+                    updated = updateStmt.executeUpdate();
+                }
+                
+                if (updated == 0) {
+                    conn.rollback();
+                    explainFailedDecrement(conn, eventId, quantity);
+                    return null;
+                }
+                
+                String bookingCode = generateBookingCode();
+                java.math.BigDecimal totalPrice = ticketPrice.multiply(new java.math.BigDecimal(quantity));
+                int bookingId = 0;
+                
+                try (PreparedStatement insertStmt = conn.prepareStatement(insertSQL, Statement.RETURN_GENERATED_KEYS)) {
+                    insertStmt.setInt(1, userId);
+                    insertStmt.setInt(2, eventId);
+                    insertStmt.setString(3, bookingCode);
+                    insertStmt.setInt(4, quantity);
+                    insertStmt.setBigDecimal(5, totalPrice);
+                    insertStmt.executeUpdate();
+                    
+                    ResultSet generatedKeys = insertStmt.getGeneratedKeys();
+                    if (generatedKeys.next()) {
+                        bookingId = generatedKeys.getInt(1);
+                    }
+                }
+                
+                conn.commit();
+                
+                Booking booking = new Booking(userId, eventId, bookingCode, quantity, totalPrice);
+                booking.setBookingId(bookingId);
+                recordWrite(booking);
+                return booking;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
     }
     
-    public Booking getById(int bookingId) throws SQLException {
-        String sql = "SELECT * FROM bookings WHERE booking_id = ?";
-        try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
+    // Works out why a guarded decrement touched no row. Only runs on failure.
+    private void explainFailedDecrement(Connection conn, int eventId, int quantity) throws SQLException {
+        String sql = "SELECT available_tickets, status FROM events WHERE event_id = ?";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, eventId);
+            ResultSet rs = stmt.executeQuery();
             
-            stmt.setInt(1, bookingId);
+            if (!rs.next()) {
+                throw new SQLException("Event not found");
+            }
+            if (!"ACTIVE".equals(rs.getString("status"))) {
+                throw new SQLException("Event is not active");
+            }
+            int availableTickets = rs.getInt("available_tickets");
+            if (availableTickets < quantity) {
+                throw new SQLException("Insufficient tickets. Available: " + availableTickets);
+            }
+        }
+    }
+    
+    // Unique per node and time-ordered, see BookingCodeGenerator
+    public static String generateBookingCode() {
+        return BookingCodeGenerator.getDefault().nextCode();
+    }
+    
+    // Locks the event row on the caller's transaction. Returns null if it does not exist.
+    public Event lockEvent(Connection conn, int eventId) throws SQLException {
+        String sql = "SELECT event_id, available_tickets, ticket_price, status FROM events WHERE event_id = ? FOR UPDATE";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, eventId);
             ResultSet rs = stmt.executeQuery();
             
-            if (rs.next()) {
-                return mapResultSetToBooking(rs);
+            if (!rs.next()) {
+                return null;
             }
-            return null;
+            Event event = new Event();
+            event.setEventId(rs.getInt("event_id"));
+            event.setAvailableTickets(rs.getInt("available_tickets"));
+            event.setTicketPrice(rs.getBigDecimal("ticket_price"));
+            event.setStatus(rs.getString("status"));
+            return event;
+        }
+    }
+    
+    // Inserts all bookings with one multi-row INSERT on the caller's transaction
+    // and fills in the generated booking ids in order.
+    public void insertBookings(Connection conn, List<Booking> bookings) throws SQLException {
+        if (bookings.isEmpty()) {
+            return;
+        }
+        
+        StringBuilder sql = new StringBuilder(
+            "INSERT INTO bookings (user_id, event_id, booking_code, quantity, total_price, status) VALUES ");
+        for (int i = 0; i < bookings.size(); i++) {
+            if (i > 0) sql.append(", ");
+            sql.append("(?, ?, ?, ?, ?, 'PENDING')");
+        }
+        
+        try (PreparedStatement stmt = conn.prepareStatement(sql.toString(), Statement.RETURN_GENERATED_KEYS)) {
+            int index = 1;
+            for (Booking booking : bookings) {
+                stmt.setInt(index++, booking.getUserId());
+                stmt.setInt(index++, booking.getEventId());
+                stmt.setString(index++, booking.getBookingCode());
+                stmt.setInt(index++, booking.getQuantity());
+                stmt.setBigDecimal(index++, booking.getTotalPrice());
+            }
+            stmt.executeUpdate();
+            
+            ResultSet generatedKeys = stmt.getGeneratedKeys();
+            for (Booking booking : bookings) {
+                if (!generatedKeys.next()) break;
+                booking.setBookingId(generatedKeys.getInt(1));
+            }
+        }
+        // Before the caller's commit, so no read can slip in between
+        for (Booking booking : bookings) {
+            recordWrite(booking);
+        }
+    }
+    
+    // Reads of the user's bookings and of the booking itself go to the primary for a while
+    private static void recordWrite(Booking booking) {
+        DatabaseConfig.recordWrite("user", booking.getUserId());
+        DatabaseConfig.recordWrite("booking", booking.getBookingId());
+    }
+    
+    public void decrementAvailableTickets(Connection conn, int eventId, int quantity) throws SQLException {
+        String sql = "UPDATE events SET available_tickets = available_tickets - ? WHERE event_id = ?";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, quantity);
+            stmt.setInt(2, eventId);
+            if (stmt.executeUpdate() == 0) {
+                throw new SQLException("Event not found");
+            }
+        }
+    }
+    
+    public void incrementAvailableTickets(Connection conn, int eventId, int quantity) throws SQLException {
+        String sql = "UPDATE events SET available_tickets = available_tickets + ? WHERE event_id = ?";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, quantity);
+            stmt.setInt(2, eventId);
+            stmt.executeUpdate();
         }
     }
     
-    public List<Booking> getByUserId(int userId) throws SQLException {
-        List<Booking> bookings = new ArrayList<>();
-        String sql = "SELECT * FROM bookings WHERE user_id = ? ORDER BY created_at DESC";
+    // Flips the given bookings that are still PENDING to EXPIRED on the caller's
+    // transaction. Rows are locked first, so a concurrent confirm either wins or
+    // waits and then finds the hold gone. Adds the expired quantity per event to
+    // perEvent and returns how many bookings expired.
+    public int expirePendingHolds(Connection conn, int[] bookingIds, int count,
+                                  Map<Integer, Integer> perEvent) throws SQLException {
+        if (count == 0) {
+            return 0;
+        }
+        
+        String in = placeholders(count);
+        List<Integer> expired = new ArrayList<>(count);
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT booking_id, event_id, quantity FROM bookings " +
+                "WHERE booking_id IN (" + in + ") AND status = 'PENDING' FOR UPDATE")) {
+            for (int i = 0; i < count; i++) {
+                stmt.setInt(i + 1, bookingIds[i]);
+            }
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                expired.add(rs.getInt(1));
+                perEvent.merge(rs.getInt(2), rs.getInt(3), Integer::sum);
+            }
+        }
+        if (expired.isEmpty()) {
+            return 0;
+        }
         
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "UPDATE bookings SET status = 'EXPIRED', updated_at = CURRENT_TIMESTAMP " +
+                "WHERE booking_id IN (" + placeholders(expired.size()) + ")")) {
+            for (int i = 0; i < expired.size(); i++) {
+                stmt.setInt(i + 1, expired.get(i));
+            }
+            stmt.executeUpdate();
+        }
+        return expired.size();
+    }
+    
+    // One keyset page of PENDING holds as {booking_id, created_at millis}, in
+    // booking_id order. Reads only the (status, booking_id) index range.
+    public List<long[]> getPendingHolds(int afterId, int limit) throws SQLException {
+        String sql = "SELECT booking_id, created_at FROM bookings " +
+                     "WHERE status = 'PENDING' AND booking_id > ? ORDER BY booking_id LIMIT ?";
         try (Connection conn = DatabaseConfig.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
-            stmt.setInt(1, userId);
+            stmt.setInt(1, afterId);
+            stmt.setInt(2, limit);
             ResultSet rs = stmt.executeQuery();
-            
+            List<long[]> holds = new ArrayList<>(limit);
             while (rs.next()) {
-                bookings.add(mapResultSetToBooking(rs));
+                holds.add(new long[] { rs.getInt(1), rs.getTimestamp(2).getTime() });
             }
+            return holds;
         }
-        return bookings;
     }
     
-    public List<Booking> getByEventId(int eventId) throws SQLException {
-        List<Booking> bookings = new ArrayList<>();
-        String sql = "SELECT * FROM bookings WHERE event_id = ? ORDER BY created_at DESC";
-        
+    private static String placeholders(int count) {
+        StringBuilder sql = new StringBuilder(count * 3);
+        for (int i = 0; i < count; i++) {
+            if (i > 0) sql.append(", ");
+            sql.append('?');
+        }
+        return sql.toString();
+    }
+    
+    // Tickets still held by bookings; expired holds have been given back
+    public int getBookedQuantity(int eventId) throws SQLException {
+        String sql = "SELECT COALESCE(SUM(quantity), 0) FROM bookings WHERE event_id = ? AND status <> 'EXPIRED'";
         try (Connection conn = DatabaseConfig.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setInt(1, eventId);
             ResultSet rs = stmt.executeQuery();
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+    
+    public Booking getById(int bookingId) throws SQLException {
+        String sql = "SELECT * FROM bookings WHERE booking_id = ?";
+        try (Connection conn = DatabaseConfig.getReadConnection("booking", bookingId);
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
             
-            while (rs.next()) {
-                bookings.add(mapResultSetToBooking(rs));
+            stmt.setInt(1, bookingId);
+            ResultSet rs = stmt.executeQuery();
+            
+            if (rs.next()) {
+                return mapResultSetToBooking(rs);
             }
+            return null;
         }
-        return bookings;
     }
     
     public boolean updateStatus(int bookingId, String status) throws SQLException {
-        String sql = "UPDATE bookings SET status = ?, updated_at = CURRENT_TIMESTAMP WHERE booking_id = ?";
+        // An expired hold has already given its tickets back and cannot be revived
+        String sql = "UPDATE bookings SET status = ?, updated_at = CURRENT_TIMESTAMP " +
+                     "WHERE booking_id = ? AND status <> 'EXPIRED'";
+        DatabaseConfig.recordWrite("booking", bookingId);
         try (Connection conn = DatabaseConfig.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
@@ -179,6 +573,7 @@ public class BookingDAO {
     
     public boolean delete(int bookingId) throws SQLException {
         String sql = "DELETE FROM bookings WHERE booking_id = ?";
+        DatabaseConfig.recordWrite("booking", bookingId);
         try (Connection conn = DatabaseConfig.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
@@ -187,7 +582,7 @@ public class BookingDAO {
         }
     }
     
-    private Booking mapResultSetToBooking(ResultSet rs) throws SQLException {
+    public Booking mapResultSetToBooking(ResultSet rs) throws SQLException {
         Booking booking = new Booking();
         booking.setBookingId(rs.getInt("booking_id"));
         booking.setUserId(rs.getInt("user_id"));
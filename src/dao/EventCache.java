@@ -0,0 +1,211 @@
+package dao;
+
+import config.AppConfig;
+import models.Event;
+
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntConsumer;
+
+/**
+ * Read-through cache of Event rows, bounded by EVENT_CACHE_MAX_SIZE (LRU per
+ * stripe) and EVENT_CACHE_TTL_MS. The entries are split over STRIPES
+ * independently locked maps, so reads of different events rarely contend.
+ *
+ * Changes to an event itself (EventDAO.update/delete, bucket split/merge)
+ * call invalidate(). Committed bookings and returned holds only move its
+ * ticket count and call ticketsChanged(), which adjusts the cached row in
+ * place: a hot event keeps being served from memory during an on-sale. So
+ * readers only see stale data for rows changed outside this process, and
+ * then for at most the TTL. The one exception is a booking committed while
+ * the same event is being reloaded, which the reloaded row may count once
+ * too often or not at all until the TTL runs out; every booking strategy
+ * re-checks the tickets under its own lock, so this only affects what GET
+ * shows.
+ *
+ * A load that raced with an invalidation of the same event is returned to
+ * its caller but not cached: each load remembers the invalidation count of
+ * its stripe and only stores the row if the count did not move.
+ *
+ * Loads may be served by a read replica; rows this process just changed are
+ * read from the primary (see DatabaseConfig.recordWrite), so an invalidation
+ * is never followed by a reload of the old row.
+ */
+public class EventCache {
+    private static final EventCache INSTANCE = new EventCache();
+    private static final int STRIPES = 64;
+
+    private final EventDAO eventDAO = new EventDAO();
+    private final int maxSize;
+    private final long ttlNanos;
+    private final AtomicLongArray invalidations = new AtomicLongArray(STRIPES);
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final List<IntConsumer> listeners = new CopyOnWriteArrayList<>();
+
+    public static EventCache getInstance() {
+        return INSTANCE;
+    }
+
+    private EventCache() {
+        this.maxSize = AppConfig.getInt("EVENT_CACHE_MAX_SIZE", 10000);
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(AppConfig.getLong("EVENT_CACHE_TTL_MS", 5000));
+        int stripeSize = Math.max(1, (maxSize + STRIPES - 1) / STRIPES);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(stripeSize);
+        }
+    }
+
+    // Returns a private copy the caller may modify, or null if the event does not exist
+    public Event get(int eventId) throws SQLException {
+        if (maxSize <= 0) {
+            return eventDAO.getByIdForRead(eventId);
+        }
+
+        long now = System.nanoTime();
+        int index = stripe(eventId);
+        Stripe stripe = stripes[index];
+        Entry entry;
+        synchronized (stripe) {
+            entry = stripe.entries.get(eventId);
+            if (entry != null && now - entry.loadedAt > ttlNanos) {
+                stripe.entries.remove(eventId);
+                entry = null;
+            }
+        }
+        if (entry != null) {
+            hits.increment();
+            return new Event(entry.event);
+        }
+
+        misses.increment();
+        long seen = invalidations.get(index);
+        Event loaded = eventDAO.getByIdForRead(eventId);
+        if (loaded == null) {
+            return null;
+        }
+        synchronized (stripe) {
+            if (invalidations.get(index) == seen) {
+                stripe.entries.put(eventId, new Entry(new Event(loaded), now));
+            }
+        }
+        return loaded;
+    }
+
+    public void invalidate(int eventId) {
+        int index = stripe(eventId);
+        invalidations.incrementAndGet(index);
+        Stripe stripe = stripes[index];
+        synchronized (stripe) {
+            stripe.entries.remove(eventId);
+        }
+        notifyListeners(eventId);
+    }
+
+    // After a commit that took (negative delta) or gave back tickets of the
+    // event and changed nothing else about it
+    public void ticketsChanged(int eventId, int delta) {
+        Stripe stripe = stripes[stripe(eventId)];
+        synchronized (stripe) {
+            Entry entry = stripe.entries.get(eventId);
+            if (entry != null) {
+                // Entries are shared with readers copying them, so replace rather than modify
+                Event event = new Event(entry.event);
+                event.setAvailableTickets(event.getAvailableTickets() + delta);
+                stripe.entries.put(eventId, new Entry(event, entry.loadedAt));
+            }
+        }
+        notifyListeners(eventId);
+    }
+
+    // Told about every invalidated or changed event id, i.e. every change to
+    // an events row; runs on the writer's thread, so it must be quick
+    public void addInvalidationListener(IntConsumer listener) {
+        listeners.add(listener);
+    }
+
+    public void clear() {
+        for (int i = 0; i < STRIPES; i++) {
+            invalidations.incrementAndGet(i);
+            synchronized (stripes[i]) {
+                stripes[i].entries.clear();
+            }
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.entries.size();
+            }
+        }
+        return size;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public double getHitRate() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+
+    public String getStats() {
+        return String.format("size=%d hits=%d misses=%d hitRate=%.3f evictions=%d",
+                size(), getHits(), getMisses(), getHitRate(), evictions.sum());
+    }
+
+    private void notifyListeners(int eventId) {
+        for (IntConsumer listener : listeners) {
+            listener.accept(eventId);
+        }
+    }
+
+    private static int stripe(int eventId) {
+        return eventId & (STRIPES - 1);
+    }
+
+    // One lock and LRU order per stripe; maxSize is split evenly between them
+    private final class Stripe {
+        final Map<Integer, Entry> entries;
+
+        Stripe(int maxSize) {
+            this.entries = new LinkedHashMap<Integer, Entry>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, Entry> eldest) {
+                    if (size() > maxSize) {
+                        evictions.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+    }
+
+    private static class Entry {
+        final Event event;
+        final long loadedAt;
+
+        Entry(Event event, long loadedAt) {
+            this.event = event;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
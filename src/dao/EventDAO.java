@@ -2,32 +2,108 @@ package dao;
 
 import config.DatabaseConfig;
 import models.Event;
+import java.io.IOException;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
 
 public class EventDAO {
+    // BUCKETED events keep their tickets in event_inventory_buckets; the
+    // subqueries (primary key range reads) are NULL and 0 for every other event.
+    private static final String SELECT_EVENTS =
+        "SELECT e.*, (SELECT SUM(b.available_tickets) FROM event_inventory_buckets b " +
+        "WHERE b.event_id = e.event_id) AS bucket_tickets, (SELECT COUNT(*) FROM event_inventory_buckets b " +
+        "WHERE b.event_id = e.event_id) AS bucket_count FROM events e";
     
-    public List<Event> getAll() throws SQLException {
-        List<Event> events = new ArrayList<>();
-        String sql = "SELECT * FROM events ORDER BY event_date DESC";
+    // Keyset-paginated stream of events by event_date (latest first). Returns
+    // the next page cursor or null on the last page.
+    public String streamAll(PageRequest page, RowCallback<Event> callback) throws SQLException, IOException {
+        return streamAll(page, null, callback);
+    }
+    
+    // As above, but first asks condition (if not null) whether the page is
+    // needed; returns null without reading it if not.
+    public String streamAll(PageRequest page, PageCondition<Event> condition,
+                            RowCallback<Event> callback) throws SQLException, IOException {
+        String where = page.hasCursor() ? " WHERE (e.event_date < ? OR (e.event_date = ? AND e.event_id < ?))" : "";
+        String order = " ORDER BY e.event_date DESC, e.event_id DESC LIMIT ?";
         
-        try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            
-            ResultSet rs = stmt.executeQuery();
+        try (Connection conn = DatabaseConfig.getReadConnection()) {
+            if (condition != null && !condition.test(versions(conn, where + order, page))) {
+                return null;
+            }
             
-            while (rs.next()) {
-                events.add(mapResultSetToEvent(rs));
+            try (PreparedStatement stmt = DatabaseConfig.prepareStreaming(conn, SELECT_EVENTS + where + order)) {
+                bindPage(stmt, page);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    Event last = null;
+                    int count = 0;
+                    while (rs.next()) {
+                        if (count == page.getLimit()) {
+                            return PageRequest.cursor(last.getEventDate(), last.getEventId());
+                        }
+                        last = mapResultSetToEvent(rs);
+                        callback.handle(last);
+                        count++;
+                    }
+                    return null;
+                }
             }
         }
-        return events;
     }
     
+    // Id, updated_at and available tickets of the page rows (plus the row
+    // after the page); idx_events_date covers all but the bucket sum
+    private List<Event> versions(Connection conn, String whereAndOrder, PageRequest page) throws SQLException {
+        String sql = "SELECT e.event_id, e.updated_at, e.available_tickets, (SELECT SUM(b.available_tickets) " +
+                     "FROM event_inventory_buckets b WHERE b.event_id = e.event_id) AS bucket_tickets FROM events e";
+        try (PreparedStatement stmt = conn.prepareStatement(sql + whereAndOrder)) {
+            bindPage(stmt, page);
+            List<Event> versions = new ArrayList<>(page.getLimit() + 1);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    Event event = new Event();
+                    event.setEventId(rs.getInt(1));
+                    event.setUpdatedAt(rs.getTimestamp(2));
+                    event.setAvailableTickets(rs.getInt(3));
+                    int bucketTickets = rs.getInt(4);
+                    if (!rs.wasNull()) {
+                        event.setAvailableTickets(bucketTickets);
+                    }
+                    versions.add(event);
+                }
+            }
+            return versions;
+        }
+    }
+    
+    private void bindPage(PreparedStatement stmt, PageRequest page) throws SQLException {
+        int index = 1;
+        if (page.hasCursor()) {
+            stmt.setTimestamp(index++, page.getAfterKey());
+            stmt.setTimestamp(index++, page.getAfterKey());
+            stmt.setInt(index++, page.getAfterId());
+        }
+        stmt.setInt(index, page.getLimit() + 1);
+    }
+    
+    // From the primary: for callers about to write based on what they read
     public Event getById(int eventId) throws SQLException {
-        String sql = "SELECT * FROM events WHERE event_id = ?";
-        try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            return getById(conn, eventId);
+        }
+    }
+    
+    // May come from a replica, unless this event was just changed (see EventCache)
+    public Event getByIdForRead(int eventId) throws SQLException {
+        try (Connection conn = DatabaseConfig.getReadConnection("event", eventId)) {
+            return getById(conn, eventId);
+        }
+    }
+    
+    private Event getById(Connection conn, int eventId) throws SQLException {
+        String sql = SELECT_EVENTS + " WHERE e.event_id = ?";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setInt(1, eventId);
             ResultSet rs = stmt.executeQuery();
@@ -39,10 +115,27 @@ public class EventDAO {
         }
     }
     
+    public List<Event> getByBookingStrategy(String bookingStrategy) throws SQLException {
+        List<Event> events = new ArrayList<>();
+        String sql = SELECT_EVENTS + " WHERE e.booking_strategy = ?";
+        
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            
+            stmt.setString(1, bookingStrategy);
+            ResultSet rs = stmt.executeQuery();
+            
+            while (rs.next()) {
+                events.add(mapResultSetToEvent(rs));
+            }
+        }
+        return events;
+    }
+    
     public Event create(Event event) throws SQLException {
         String sql = "INSERT INTO events (organizer_id, event_name, description, event_date, location, " +
-                    "total_capacity, available_tickets, ticket_price, status) " +
-                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+                    "total_capacity, available_tickets, ticket_price, status, booking_strategy) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
         
         try (Connection conn = DatabaseConfig.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
@@ -56,6 +149,7 @@ public class EventDAO {
             stmt.setInt(7, event.getAvailableTickets());
             stmt.setBigDecimal(8, event.getTicketPrice());
             stmt.setString(9, event.getStatus());
+            stmt.setString(10, event.getBookingStrategy());
             
             stmt.executeUpdate();
             
@@ -63,14 +157,52 @@ public class EventDAO {
             if (generatedKeys.next()) {
                 event.setEventId(generatedKeys.getInt(1));
             }
+            DatabaseConfig.recordWrite("event", event.getEventId());
             
             return event;
         }
     }
     
     public boolean update(Event event) throws SQLException {
-        StringBuilder sql = new StringBuilder("UPDATE events SET ");
+        StringBuilder sql = new StringBuilder();
         List<Object> params = new ArrayList<>();
+        if (!buildUpdate(event, sql, params)) {
+            return false; // No fields to update
+        }
+        
+        DatabaseConfig.recordWrite("event", event.getEventId());
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            boolean updated = update(conn, sql.toString(), params);
+            EventCache.getInstance().invalidate(event.getEventId());
+            return updated;
+        }
+    }
+    
+    // update() on the caller's transaction; the caller invalidates the event cache after commit
+    public boolean update(Connection conn, Event event) throws SQLException {
+        StringBuilder sql = new StringBuilder();
+        List<Object> params = new ArrayList<>();
+        if (!buildUpdate(event, sql, params)) {
+            return false;
+        }
+        DatabaseConfig.recordWrite("event", event.getEventId());
+        return update(conn, sql.toString(), params);
+    }
+    
+    // The event's booking strategy, read with the row locked until the caller's
+    // transaction ends; null if the event does not exist
+    public String lockBookingStrategy(Connection conn, int eventId) throws SQLException {
+        String sql = "SELECT booking_strategy FROM events WHERE event_id = ? FOR UPDATE";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, eventId);
+            ResultSet rs = stmt.executeQuery();
+            return rs.next() ? rs.getString(1) : null;
+        }
+    }
+    
+    // The UPDATE for the event's non-null fields; false if there are none
+    private boolean buildUpdate(Event event, StringBuilder sql, List<Object> params) {
+        sql.append("UPDATE events SET ");
         boolean first = true;
         
         if (event.getEventName() != null) {
@@ -108,31 +240,41 @@ public class EventDAO {
             first = false;
         }
         
+        if (event.getBookingStrategy() != null) {
+            if (!first) sql.append(", ");
+            sql.append("booking_strategy = ?");
+            params.add(event.getBookingStrategy());
+            first = false;
+        }
+        
         if (first) {
-            return false; // No fields to update
+            return false;
         }
         
-        sql.append(", updated_at = CURRENT_TIMESTAMP WHERE event_id = ?");
+        sql.append(", updated_at = CURRENT_TIMESTAMP(3) WHERE event_id = ?");
         params.add(event.getEventId());
-        
-        try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
-            
+        return true;
+    }
+    
+    private boolean update(Connection conn, String sql, List<Object> params) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
             for (int i = 0; i < params.size(); i++) {
                 stmt.setObject(i + 1, params.get(i));
             }
-            
             return stmt.executeUpdate() > 0;
         }
     }
     
     public boolean delete(int eventId) throws SQLException {
         String sql = "DELETE FROM events WHERE event_id = ?";
+        DatabaseConfig.recordWrite("event", eventId);
         try (Connection conn = DatabaseConfig.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setInt(1, eventId);
-            return stmt.executeUpdate() > 0;
+            boolean deleted = stmt.executeUpdate() > 0;
+            EventCache.getInstance().invalidate(eventId);
+            return deleted;
         }
     }
     
@@ -146,8 +288,14 @@ public class EventDAO {
         event.setLocation(rs.getString("location"));
         event.setTotalCapacity(rs.getInt("total_capacity"));
         event.setAvailableTickets(rs.getInt("available_tickets"));
+        int bucketTickets = rs.getInt("bucket_tickets");
+        if (!rs.wasNull()) {
+            event.setAvailableTickets(bucketTickets);
+        }
+        event.setBucketCount(rs.getInt("bucket_count"));
         event.setTicketPrice(rs.getBigDecimal("ticket_price"));
         event.setStatus(rs.getString("status"));
+        event.setBookingStrategy(rs.getString("booking_strategy"));
         event.setCreatedAt(rs.getTimestamp("created_at"));
         event.setUpdatedAt(rs.getTimestamp("updated_at"));
         return event;
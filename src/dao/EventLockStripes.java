@@ -0,0 +1,144 @@
+package dao;
+
+import config.AppConfig;
+import metrics.Metrics;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Gate in front of the event row locks. Events hash onto EVENT_LOCK_STRIPES
+ * fair semaphores of EVENT_LOCK_MAX_WAITERS permits each, taken before a
+ * connection is borrowed. So at most that many transactions per stripe hold a
+ * pooled connection while queued on InnoDB's lock for the row; the rest wait
+ * here without a connection, for at most EVENT_LOCK_WAIT_MS.
+ *
+ * Events that share a stripe share its permits, so use enough stripes for the
+ * number of events that are hot at the same time. EVENT_LOCK_MAX_WAITERS=0
+ * turns the gate off.
+ */
+public final class EventLockStripes {
+    private static final EventLockStripes DEFAULT = new EventLockStripes(
+        AppConfig.getInt("EVENT_LOCK_STRIPES", 64),
+        AppConfig.getInt("EVENT_LOCK_MAX_WAITERS", 4),
+        AppConfig.getLong("EVENT_LOCK_WAIT_MS", 5000));
+
+    private final Semaphore[] stripes;
+    private final int mask;
+    private final long waitMs;
+    private final LongAdder timeouts = Metrics.counter("event_lock_stripe_timeouts_total",
+            "Bookings that gave up waiting for an event lock stripe.", "");
+
+    public static EventLockStripes getDefault() {
+        return DEFAULT;
+    }
+
+    public EventLockStripes(int stripeCount, int maxWaiters, long waitMs) {
+        if (Integer.bitCount(stripeCount) != 1) {
+            throw new IllegalArgumentException("EVENT_LOCK_STRIPES must be a power of two: " + stripeCount);
+        }
+        this.mask = stripeCount - 1;
+        this.waitMs = waitMs;
+        this.stripes = new Semaphore[maxWaiters > 0 ? stripeCount : 0];
+        for (int i = 0; i < stripes.length; i++) {
+            Semaphore stripe = new Semaphore(maxWaiters, true);
+            stripes[i] = stripe;
+            String labels = "stripe=\"" + i + "\"";
+            Metrics.gauge("event_lock_stripe_waiting", "Bookings queued in the JVM for an event lock stripe.",
+                          labels, stripe::getQueueLength);
+            Metrics.gauge("event_lock_stripe_active", "Bookings holding an event lock stripe (at or waiting for the row lock).",
+                          labels, () -> maxWaiters - stripe.availablePermits());
+        }
+    }
+
+    /**
+     * Takes the stripe of eventId and returns it for release(), or -1 when the
+     * gate is off. Throws SQLException after EVENT_LOCK_WAIT_MS, like a pool
+     * timeout.
+     */
+    public int acquire(int eventId) throws SQLException {
+        if (stripes.length == 0) {
+            return -1;
+        }
+        int stripe = stripeOf(eventId);
+        try {
+            if (stripes[stripe].tryAcquire(waitMs, TimeUnit.MILLISECONDS)) {
+                return stripe;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted waiting for the lock of event " + eventId);
+        }
+        timeouts.increment();
+        throw new SQLException("Timed out after " + waitMs + " ms waiting for the lock of event " + eventId);
+    }
+
+    public void release(int stripe) {
+        if (stripe >= 0) {
+            stripes[stripe].release();
+        }
+    }
+
+    // Stripes of all eventIds, each taken once and in ascending order so two
+    // batches never wait on each other in a cycle
+    public int[] acquireAll(Iterable<Integer> eventIds) throws SQLException {
+        if (stripes.length == 0) {
+            return new int[0];
+        }
+        int[] wanted = new int[8];
+        int count = 0;
+        for (int eventId : eventIds) {
+            if (count == wanted.length) {
+                wanted = Arrays.copyOf(wanted, count * 2);
+            }
+            wanted[count++] = eventId;
+        }
+        int[] held = new int[count];
+        for (int i = 0; i < count; i++) {
+            held[i] = stripeOf(wanted[i]);
+        }
+        Arrays.sort(held);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || held[i] != held[distinct - 1]) {
+                held[distinct++] = held[i];
+            }
+        }
+        held = Arrays.copyOf(held, distinct);
+
+        int taken = 0;
+        try {
+            for (; taken < held.length; taken++) {
+                if (!stripes[held[taken]].tryAcquire(waitMs, TimeUnit.MILLISECONDS)) {
+                    timeouts.increment();
+                    throw new SQLException("Timed out after " + waitMs + " ms waiting for event locks");
+                }
+            }
+            return held;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted waiting for event locks");
+        } finally {
+            if (taken < held.length) {
+                for (int i = 0; i < taken; i++) {
+                    stripes[held[i]].release();
+                }
+            }
+        }
+    }
+
+    public void releaseAll(int[] held) {
+        for (int stripe : held) {
+            stripes[stripe].release();
+        }
+    }
+
+    private int stripeOf(int eventId) {
+        // Spread sequential ids so neighbouring events land on different stripes
+        int h = eventId * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+}
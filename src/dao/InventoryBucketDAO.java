@@ -0,0 +1,174 @@
+package dao;
+
+import config.DatabaseConfig;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+public class InventoryBucketDAO {
+
+    // Moves the event's remaining tickets into bucketCount rows and zeroes
+    // events.available_tickets, so the single-row paths can never sell them twice.
+    public void split(int eventId, int bucketCount) throws SQLException {
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                split(conn, eventId, bucketCount);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+        EventCache.getInstance().invalidate(eventId);
+    }
+    
+    // As above on the caller's transaction; the caller invalidates the event cache after commit
+    public void split(Connection conn, int eventId, int bucketCount) throws SQLException {
+        int available = lockEventTickets(conn, eventId);
+
+        try (PreparedStatement delete = conn.prepareStatement(
+                "DELETE FROM event_inventory_buckets WHERE event_id = ?")) {
+            delete.setInt(1, eventId);
+            delete.executeUpdate();
+        }
+
+        try (PreparedStatement insert = conn.prepareStatement(
+                "INSERT INTO event_inventory_buckets (event_id, bucket_no, available_tickets) VALUES (?, ?, ?)")) {
+            for (int i = 0; i < bucketCount; i++) {
+                // Spread the remainder over the first buckets
+                int share = available / bucketCount + (i < available % bucketCount ? 1 : 0);
+                insert.setInt(1, eventId);
+                insert.setInt(2, i);
+                insert.setInt(3, share);
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+
+        setEventTickets(conn, eventId, 0);
+    }
+
+    // Folds the buckets back into events.available_tickets and removes them,
+    // on the caller's transaction; the caller invalidates the event cache after commit.
+    public void merge(Connection conn, int eventId) throws SQLException {
+        int current = lockEventTickets(conn, eventId);
+        int inBuckets = 0;
+        for (int[] bucket : lockBuckets(conn, eventId)) {
+            inBuckets += bucket[1];
+        }
+
+        try (PreparedStatement delete = conn.prepareStatement(
+                "DELETE FROM event_inventory_buckets WHERE event_id = ?")) {
+            delete.setInt(1, eventId);
+            delete.executeUpdate();
+        }
+
+        setEventTickets(conn, eventId, current + inBuckets);
+    }
+
+    // Gives tickets back to bucket 0 on the caller's transaction. Returns false
+    // when the event is not bucketed, so the caller credits events.available_tickets.
+    public boolean returnTickets(Connection conn, int eventId, int quantity) throws SQLException {
+        String sql = "UPDATE event_inventory_buckets SET available_tickets = available_tickets + ? " +
+                     "WHERE event_id = ? AND bucket_no = 0";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, quantity);
+            stmt.setInt(2, eventId);
+            return stmt.executeUpdate() > 0;
+        }
+    }
+
+    // Guarded decrement of one bucket on the caller's transaction. The join
+    // only takes a shared lock on the event row, so bookers do not block each other.
+    public boolean tryDecrement(Connection conn, int eventId, int bucketNo, int quantity) throws SQLException {
+        String sql = "UPDATE event_inventory_buckets b JOIN events e ON e.event_id = b.event_id " +
+                     "SET b.available_tickets = b.available_tickets - ? " +
+                     "WHERE b.event_id = ? AND b.bucket_no = ? AND b.available_tickets >= ? AND e.status = 'ACTIVE'";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, quantity);
+            stmt.setInt(2, eventId);
+            stmt.setInt(3, bucketNo);
+            stmt.setInt(4, quantity);
+            return stmt.executeUpdate() > 0;
+        }
+    }
+
+    // Slow path when no single bucket holds enough tickets: lock every bucket
+    // in bucket order and take the quantity from as many as needed.
+    public void takeAcrossBuckets(Connection conn, int eventId, int quantity) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT status FROM events WHERE event_id = ?")) {
+            stmt.setInt(1, eventId);
+            ResultSet rs = stmt.executeQuery();
+            if (!rs.next()) {
+                throw new SQLException("Event not found");
+            }
+            if (!"ACTIVE".equals(rs.getString(1))) {
+                throw new SQLException("Event is not active");
+            }
+        }
+        
+        List<int[]> buckets = lockBuckets(conn, eventId);
+        int total = 0;
+        for (int[] bucket : buckets) {
+            total += bucket[1];
+        }
+        if (total < quantity) {
+            throw new SQLException("Insufficient tickets. Available: " + total);
+        }
+
+        String sql = "UPDATE event_inventory_buckets SET available_tickets = available_tickets - ? " +
+                     "WHERE event_id = ? AND bucket_no = ?";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            int remaining = quantity;
+            for (int[] bucket : buckets) {
+                if (remaining == 0) break;
+                int take = Math.min(remaining, bucket[1]);
+                if (take == 0) continue;
+                stmt.setInt(1, take);
+                stmt.setInt(2, eventId);
+                stmt.setInt(3, bucket[0]);
+                stmt.addBatch();
+                remaining -= take;
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    private List<int[]> lockBuckets(Connection conn, int eventId) throws SQLException {
+        List<int[]> buckets = new ArrayList<>();
+        String sql = "SELECT bucket_no, available_tickets FROM event_inventory_buckets " +
+                     "WHERE event_id = ? ORDER BY bucket_no FOR UPDATE";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, eventId);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                buckets.add(new int[] { rs.getInt(1), rs.getInt(2) });
+            }
+        }
+        return buckets;
+    }
+
+    private int lockEventTickets(Connection conn, int eventId) throws SQLException {
+        String sql = "SELECT available_tickets FROM events WHERE event_id = ? FOR UPDATE";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, eventId);
+            ResultSet rs = stmt.executeQuery();
+            if (!rs.next()) {
+                throw new SQLException("Event not found");
+            }
+            return rs.getInt(1);
+        }
+    }
+
+    private void setEventTickets(Connection conn, int eventId, int availableTickets) throws SQLException {
+        String sql = "UPDATE events SET available_tickets = ? WHERE event_id = ?";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, availableTickets);
+            stmt.setInt(2, eventId);
+            stmt.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package dao;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Lets the caller of a streaming page query skip the page. Before the page is
+ * read it gets the page rows with only their id and version columns set
+ * (updated_at and the like), read on the same connection the page would be
+ * read from, and returns false if it does not need the rows.
+ */
+public interface PageCondition<T> {
+
+    boolean test(List<T> versions) throws IOException;
+}
@@ -0,0 +1,70 @@
+package dao;
+
+import config.AppConfig;
+import json.JsonException;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.Base64;
+
+/**
+ * Keyset pagination request: page size plus the (sort key, id) position of
+ * the last row of the previous page. Cursors are opaque base64url strings
+ * so clients cannot depend on their contents. A bad limit or cursor is a
+ * 400 (JsonException).
+ */
+public class PageRequest {
+    private static final int DEFAULT_LIMIT = AppConfig.getInt("PAGE_DEFAULT_LIMIT", 100);
+    private static final int MAX_LIMIT = AppConfig.getInt("PAGE_MAX_LIMIT", 1000);
+    
+    private final int limit;
+    private final Timestamp afterKey;
+    private final int afterId;
+    
+    private PageRequest(int limit, Timestamp afterKey, int afterId) {
+        this.limit = limit;
+        this.afterKey = afterKey;
+        this.afterId = afterId;
+    }
+    
+    public static PageRequest firstPage() {
+        return new PageRequest(DEFAULT_LIMIT, null, 0);
+    }
+    
+    public static PageRequest of(String limitParam, String afterParam) {
+        int limit = DEFAULT_LIMIT;
+        if (limitParam != null) {
+            try {
+                limit = Integer.parseInt(limitParam);
+            } catch (NumberFormatException e) {
+                throw new JsonException(400, "limit must be a number");
+            }
+            if (limit <= 0 || limit > MAX_LIMIT) {
+                throw new JsonException(400, "limit must be between 1 and " + MAX_LIMIT);
+            }
+        }
+        
+        if (afterParam == null || afterParam.isEmpty()) {
+            return new PageRequest(limit, null, 0);
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(afterParam), StandardCharsets.US_ASCII);
+            int colon = decoded.indexOf(':');
+            long millis = Long.parseLong(decoded.substring(0, colon));
+            int id = Integer.parseInt(decoded.substring(colon + 1));
+            return new PageRequest(limit, new Timestamp(millis), id);
+        } catch (RuntimeException e) {
+            throw new JsonException(400, "Invalid cursor");
+        }
+    }
+    
+    public static String cursor(Timestamp key, int id) {
+        String raw = key.getTime() + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.US_ASCII));
+    }
+    
+    public int getLimit() { return limit; }
+    public boolean hasCursor() { return afterKey != null; }
+    public Timestamp getAfterKey() { return afterKey; }
+    public int getAfterId() { return afterId; }
+}
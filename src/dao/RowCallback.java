@@ -0,0 +1,12 @@
+package dao;
+
+import java.io.IOException;
+
+/**
+ * Receives rows one at a time from the streaming DAO queries, so callers can
+ * write them out without collecting the whole result in a list.
+ */
+public interface RowCallback<T> {
+    
+    void handle(T row) throws IOException;
+}
@@ -2,31 +2,81 @@ package dao;
 
 import config.DatabaseConfig;
 import models.User;
+import java.io.IOException;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
 
 public class UserDAO {
     
-    public List<User> getAll() throws SQLException {
-        List<User> users = new ArrayList<>();
-        String sql = "SELECT * FROM users ORDER BY created_at DESC";
+    // Keyset-paginated stream of users, newest first. Returns the next page
+    // cursor or null on the last page.
+    public String streamAll(PageRequest page, RowCallback<User> callback) throws SQLException, IOException {
+        return streamAll(page, null, callback);
+    }
+    
+    // As above, but first asks condition (if not null) whether the page is
+    // needed; returns null without reading it if not.
+    public String streamAll(PageRequest page, PageCondition<User> condition,
+                            RowCallback<User> callback) throws SQLException, IOException {
+        String where = page.hasCursor() ? " WHERE (created_at < ? OR (created_at = ? AND user_id < ?))" : "";
+        String order = " ORDER BY created_at DESC, user_id DESC LIMIT ?";
         
-        try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            
-            ResultSet rs = stmt.executeQuery();
+        try (Connection conn = DatabaseConfig.getReadConnection()) {
+            if (condition != null && !condition.test(versions(conn, where + order, page))) {
+                return null;
+            }
             
-            while (rs.next()) {
-                users.add(mapResultSetToUser(rs));
+            try (PreparedStatement stmt = DatabaseConfig.prepareStreaming(conn, "SELECT * FROM users" + where + order)) {
+                bindPage(stmt, page);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    User last = null;
+                    int count = 0;
+                    while (rs.next()) {
+                        if (count == page.getLimit()) {
+                            return PageRequest.cursor(last.getCreatedAt(), last.getUserId());
+                        }
+                        last = mapResultSetToUser(rs);
+                        callback.handle(last);
+                        count++;
+                    }
+                    return null;
+                }
+            }
+        }
+    }
+    
+    // Id and updated_at of the page rows (plus the row after the page),
+    // answered from idx_users_created alone
+    private List<User> versions(Connection conn, String whereAndOrder, PageRequest page) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT user_id, updated_at FROM users" + whereAndOrder)) {
+            bindPage(stmt, page);
+            List<User> versions = new ArrayList<>(page.getLimit() + 1);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    User user = new User();
+                    user.setUserId(rs.getInt(1));
+                    user.setUpdatedAt(rs.getTimestamp(2));
+                    versions.add(user);
+                }
             }
+            return versions;
         }
-        return users;
+    }
+    
+    private void bindPage(PreparedStatement stmt, PageRequest page) throws SQLException {
+        int index = 1;
+        if (page.hasCursor()) {
+            stmt.setTimestamp(index++, page.getAfterKey());
+            stmt.setTimestamp(index++, page.getAfterKey());
+            stmt.setInt(index++, page.getAfterId());
+        }
+        stmt.setInt(index, page.getLimit() + 1);
     }
     
     public User getById(int userId) throws SQLException {
         String sql = "SELECT * FROM users WHERE user_id = ?";
-        try (Connection conn = DatabaseConfig.getConnection();
+        try (Connection conn = DatabaseConfig.getReadConnection("user", userId);
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setInt(1, userId);
@@ -39,6 +89,19 @@ public class UserDAO {
         }
     }
     
+    // Just the user's updated_at, or null if it does not exist: enough to
+    // answer a conditional GET without reading the row
+    public Timestamp getUpdatedAt(int userId) throws SQLException {
+        String sql = "SELECT updated_at FROM users WHERE user_id = ?";
+        try (Connection conn = DatabaseConfig.getReadConnection("user", userId);
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            
+            stmt.setInt(1, userId);
+            ResultSet rs = stmt.executeQuery();
+            return rs.next() ? rs.getTimestamp(1) : null;
+        }
+    }
+    
     public User create(User user) throws SQLException {
         String sql = "INSERT INTO users (username, email, password, full_name, phone, role) " +
                     "VALUES (?, ?, ?, ?, ?, ?)";
@@ -59,6 +122,7 @@ public class UserDAO {
             if (generatedKeys.next()) {
                 user.setUserId(generatedKeys.getInt(1));
             }
+            DatabaseConfig.recordWrite("user", user.getUserId());
             
             return user;
         }
@@ -108,9 +172,10 @@ public class UserDAO {
             return false; // No fields to update
         }
         
-        sql.append(", updated_at = CURRENT_TIMESTAMP WHERE user_id = ?");
+        sql.append(", updated_at = CURRENT_TIMESTAMP(3) WHERE user_id = ?");
         params.add(user.getUserId());
         
+        DatabaseConfig.recordWrite("user", user.getUserId());
         try (Connection conn = DatabaseConfig.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
             
@@ -124,6 +189,7 @@ public class UserDAO {
     
     public boolean delete(int userId) throws SQLException {
         String sql = "DELETE FROM users WHERE user_id = ?";
+        DatabaseConfig.recordWrite("user", userId);
         try (Connection conn = DatabaseConfig.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
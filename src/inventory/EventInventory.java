@@ -0,0 +1,79 @@
+package inventory;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-memory ticket counter for one event. The counter is the source of truth
+ * for reservations while the event is loaded; MySQL catches up through the
+ * write-behind queue.
+ */
+public class EventInventory {
+    public static final int INSUFFICIENT = -1;
+
+    private final int eventId;
+    private final AtomicInteger available;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final BigDecimal ticketPrice;
+    private final boolean active;
+    private volatile boolean retired;
+
+    public EventInventory(int eventId, int available, BigDecimal ticketPrice, boolean active) {
+        this.eventId = eventId;
+        this.available = new AtomicInteger(available);
+        this.ticketPrice = ticketPrice;
+        this.active = active;
+    }
+
+    /**
+     * Registers a reserving thread. Returns false when the inventory has been
+     * retired and the caller has to reload it. Every successful enter() must
+     * be paired with exit() once the reservation has been queued.
+     */
+    public boolean enter() {
+        inFlight.incrementAndGet();
+        if (retired) {
+            inFlight.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    public void exit() {
+        inFlight.decrementAndGet();
+    }
+
+    /**
+     * Takes quantity tickets with a CAS loop. Returns the remaining count or
+     * INSUFFICIENT when there are not enough tickets.
+     */
+    public int tryReserve(int quantity) {
+        while (true) {
+            int current = available.get();
+            if (current < quantity) {
+                return INSUFFICIENT;
+            }
+            if (available.compareAndSet(current, current - quantity)) {
+                return current - quantity;
+            }
+        }
+    }
+
+    public void release(int quantity) {
+        available.addAndGet(quantity);
+    }
+
+    // Stops new reservations and waits for the ones already past enter()
+    void retire() {
+        retired = true;
+        while (inFlight.get() > 0) {
+            Thread.yield();
+        }
+    }
+
+    public int getEventId() { return eventId; }
+    public int getAvailable() { return available.get(); }
+    public BigDecimal getTicketPrice() { return ticketPrice; }
+    public boolean isActive() { return active; }
+    public boolean isRetired() { return retired; }
+}
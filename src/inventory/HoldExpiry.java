@@ -0,0 +1,190 @@
+package inventory;
+
+import config.AppConfig;
+import config.DatabaseConfig;
+import dao.BookingDAO;
+import dao.EventCache;
+import dao.InventoryBucketDAO;
+import metrics.Metrics;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Expires PENDING bookings whose hold ran out and gives their tickets back.
+ *
+ * Every new hold is put on a {@link TimingWheel} keyed by its deadline
+ * (creation + BOOKING_HOLD_TTL_SEC). One thread advances the wheel each tick
+ * and expires the due bookings in batches of HOLD_EXPIRY_BATCH_SIZE: one
+ * transaction flips them to EXPIRED (only if still PENDING) and credits each
+ * event once with the summed quantity. Nothing scans the bookings table; on
+ * startup the wheel is rebuilt from the PENDING range of the status index.
+ */
+public class HoldExpiry {
+
+    private static volatile HoldExpiry instance;
+
+    private final BookingDAO bookingDAO = new BookingDAO();
+    private final InventoryBucketDAO bucketDAO = new InventoryBucketDAO();
+    private final long ttlMs;
+    private final long tickMs;
+    private final int batchSize;
+    private final TimingWheel wheel;
+    private final Thread worker;
+    private volatile boolean running = true;
+    // Ids that came due this tick; only touched by the worker
+    private int[] due = new int[64];
+    private int dueCount;
+
+    private final LongAdder expired = Metrics.counter("booking_holds_expired_total",
+            "PENDING bookings expired by the hold timer.", "");
+    private final LongAdder returned = Metrics.counter("booking_hold_tickets_returned_total",
+            "Tickets given back by expired holds.", "");
+    private final LongAdder retries = new LongAdder();
+
+    // Starts the expiry thread unless BOOKING_HOLD_TTL_SEC is 0
+    public static synchronized void start() {
+        if (instance != null || AppConfig.getLong("BOOKING_HOLD_TTL_SEC", 900) <= 0) {
+            return;
+        }
+        HoldExpiry expiry = new HoldExpiry();
+        // Tracks new holds while the wheel is rebuilt; duplicates are harmless
+        instance = expiry;
+        expiry.rebuild();
+        expiry.worker.start();
+    }
+
+    public static void shutdownIfStarted() {
+        HoldExpiry expiry = instance;
+        if (expiry != null) {
+            expiry.running = false;
+            expiry.worker.interrupt();
+        }
+    }
+
+    // Called once a PENDING booking is committed. Does nothing if expiry is off.
+    public static void track(int bookingId) {
+        HoldExpiry expiry = instance;
+        if (expiry != null && bookingId > 0) {
+            expiry.wheel.add(bookingId, System.currentTimeMillis() + expiry.ttlMs);
+        }
+    }
+
+    public static String getStatsIfStarted() {
+        HoldExpiry expiry = instance;
+        return expiry != null ? expiry.getStats() : "off";
+    }
+
+    private HoldExpiry() {
+        this.ttlMs = AppConfig.getLong("BOOKING_HOLD_TTL_SEC", 900) * 1000;
+        this.tickMs = AppConfig.getLong("HOLD_EXPIRY_TICK_MS", 1000);
+        this.batchSize = AppConfig.getInt("HOLD_EXPIRY_BATCH_SIZE", 500);
+        this.wheel = new TimingWheel(System.currentTimeMillis(), tickMs,
+                                     AppConfig.getInt("HOLD_WHEEL_SLOTS", 4096));
+        this.worker = new Thread(this::run, "hold-expiry");
+        this.worker.setDaemon(true);
+        Metrics.gauge("booking_holds_tracked", "PENDING holds waiting on the expiry wheel.", "", wheel::size);
+    }
+
+    public String getStats() {
+        return "tracked=" + wheel.size() + " expired=" + expired.sum() +
+               " returned=" + returned.sum() + " retries=" + retries.sum();
+    }
+
+    private void rebuild() {
+        int loaded = 0;
+        int afterId = 0;
+        try {
+            while (true) {
+                List<long[]> page = bookingDAO.getPendingHolds(afterId, 10000);
+                for (long[] hold : page) {
+                    wheel.add((int) hold[0], hold[1] + ttlMs);
+                }
+                loaded += page.size();
+                if (page.size() < 10000) {
+                    break;
+                }
+                afterId = (int) page.get(page.size() - 1)[0];
+            }
+            System.out.println("[HOLDS] Tracking " + loaded + " pending hold(s), TTL " + ttlMs / 1000 + "s");
+        } catch (SQLException e) {
+            // Holds created from now on are still tracked; older ones wait for the next restart
+            System.err.println("[HOLDS] Rebuild failed after " + loaded + " hold(s): " + e.getMessage());
+        }
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                Thread.sleep(tickMs);
+            } catch (InterruptedException e) {
+                return;
+            }
+            dueCount = 0;
+            wheel.advance(System.currentTimeMillis(), this::collect);
+            for (int from = 0; from < dueCount && running; from += batchSize) {
+                int count = Math.min(batchSize, dueCount - from);
+                expireBatch(Arrays.copyOfRange(due, from, from + count), count);
+            }
+        }
+    }
+
+    private void collect(int bookingId) {
+        if (dueCount == due.length) {
+            due = Arrays.copyOf(due, dueCount * 2);
+        }
+        due[dueCount++] = bookingId;
+    }
+
+    private void expireBatch(int[] bookingIds, int count) {
+        // Ascending event order so concurrent transactions lock events alike
+        Map<Integer, Integer> perEvent = new TreeMap<>();
+        Map<Integer, EventInventory> counters = new HashMap<>();
+        int expiredCount;
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                expiredCount = bookingDAO.expirePendingHolds(conn, bookingIds, count, perEvent);
+                for (Map.Entry<Integer, Integer> entry : perEvent.entrySet()) {
+                    if (!bucketDAO.returnTickets(conn, entry.getKey(), entry.getValue())) {
+                        bookingDAO.incrementAvailableTickets(conn, entry.getKey(), entry.getValue());
+                    }
+                    EventInventory counter = InventoryEngine.loadedCounter(entry.getKey());
+                    if (counter != null) {
+                        counters.put(entry.getKey(), counter);
+                    }
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            // Put the batch back a tick later; bookings settled meanwhile are skipped then
+            retries.increment();
+            System.err.println("[HOLDS] Expiring " + count + " hold(s) failed, retrying: " + e.getMessage());
+            long retryAt = System.currentTimeMillis() + Math.max(tickMs, 1000);
+            for (int i = 0; i < count; i++) {
+                wheel.add(bookingIds[i], retryAt);
+            }
+            return;
+        }
+
+        expired.add(expiredCount);
+        for (Map.Entry<Integer, Integer> entry : perEvent.entrySet()) {
+            returned.add(entry.getValue());
+            EventCache.getInstance().ticketsChanged(entry.getKey(), entry.getValue());
+            // Straight into a loaded MEMORY counter; evicting it on every tick of an on-sale would
+            // keep reservations waiting for the write-behind to drain
+            InventoryEngine.returnTickets(entry.getKey(), counters.get(entry.getKey()), entry.getValue());
+        }
+    }
+}
@@ -0,0 +1,467 @@
+package inventory;
+
+import config.AppConfig;
+import config.DatabaseConfig;
+import dao.BookingDAO;
+import dao.EventCache;
+import dao.EventDAO;
+import models.Booking;
+import models.Event;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Authoritative in-memory ticket inventory for events using the MEMORY
+ * booking strategy.
+ *
+ * Reservations are taken from an {@link EventInventory} counter with CAS and
+ * handed to a single writer thread that persists them in batches (one
+ * multi-row INSERT plus one UPDATE per event, in one transaction). Counters
+ * are loaded from MySQL and reconciled against the bookings table, so the
+ * in-memory count can never be higher than what the database still allows.
+ */
+public class InventoryEngine {
+    public static final String STRATEGY = "MEMORY";
+
+    private static volatile InventoryEngine instance;
+
+    private final EventDAO eventDAO = new EventDAO();
+    private final BookingDAO bookingDAO = new BookingDAO();
+    private final Map<Integer, EventInventory> inventories = new ConcurrentHashMap<>();
+    // Per event: the lock loads and exclusive changes take, and the number of
+    // its reservations queued but not yet written
+    private final Map<Integer, Object> loadLocks = new ConcurrentHashMap<>();
+    private final Map<Integer, AtomicInteger> queuedWrites = new ConcurrentHashMap<>();
+    private final BlockingQueue<Booking> writeQueue;
+    private final int batchSize;
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final LongAdder persisted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder writeRetries = new LongAdder();
+
+    public static InventoryEngine getInstance() {
+        InventoryEngine engine = instance;
+        if (engine == null) {
+            synchronized (InventoryEngine.class) {
+                engine = instance;
+                if (engine == null) {
+                    engine = new InventoryEngine();
+                    engine.reconcileAll();
+                    instance = engine;
+                }
+            }
+        }
+        return engine;
+    }
+
+    public static void shutdownIfStarted() {
+        InventoryEngine engine = instance;
+        if (engine != null) {
+            engine.shutdown();
+        }
+    }
+
+    // Called after an event row changes so a loaded counter picks up the new
+    // status, price or strategy. Does nothing if the engine never started.
+    public static void onEventChanged(int eventId) {
+        InventoryEngine engine = instance;
+        if (engine != null) {
+            engine.evict(eventId);
+        }
+    }
+
+    /**
+     * Thrown by reserve() when the event, picked for MEMORY from a cached
+     * copy, has been switched to another strategy since. Retry with a fresh
+     * copy of the event.
+     */
+    public static final class StrategyChangedException extends SQLTransientException {
+        private static final long serialVersionUID = 1L;
+
+        StrategyChangedException(int eventId, String strategy) {
+            super("Event " + eventId + " now uses the " + strategy + " booking strategy, please retry");
+        }
+    }
+
+    /** A change to an event's tickets that must not overlap MEMORY reservations. */
+    public interface TicketChange {
+        void run() throws SQLException;
+    }
+
+    /**
+     * Runs change with no MEMORY reservation for the event in flight or
+     * queued: the loaded counter is retired and its writes drained first, and
+     * reservations of the event wait until change returns. For rare changes
+     * that move the event's tickets, like a switch of booking strategy; the
+     * next reservation reloads from the table.
+     */
+    public static void runExclusive(int eventId, TicketChange change) throws SQLException {
+        InventoryEngine engine = instance;
+        if (engine == null) {
+            change.run();
+            return;
+        }
+        synchronized (engine.loadLock(eventId)) {
+            // Stays in the map retired, so reservations go to load() and wait here
+            EventInventory inventory = engine.inventories.get(eventId);
+            if (inventory != null) {
+                inventory.retire();
+                if (!engine.awaitDrained(eventId)) {
+                    throw new SQLException("Interrupted waiting for queued bookings of event " + eventId);
+                }
+            }
+            try {
+                change.run();
+            } finally {
+                if (inventory != null) {
+                    engine.inventories.remove(eventId, inventory);
+                }
+            }
+        }
+    }
+
+    // The event's loaded counter, or null. Taken before committing a change
+    // that gives tickets back to the table, for returnTickets().
+    public static EventInventory loadedCounter(int eventId) {
+        InventoryEngine engine = instance;
+        if (engine == null) {
+            return null;
+        }
+        EventInventory inventory = engine.inventories.get(eventId);
+        return inventory != null && !inventory.isRetired() ? inventory : null;
+    }
+
+    /**
+     * Credits tickets that a committed transaction gave back to the table.
+     * counter is what loadedCounter() returned before the commit, so it cannot
+     * include them yet and they are added to it. If it has been retired since,
+     * a newer counter may or may not include them, so that one is evicted and
+     * reloaded instead.
+     */
+    public static void returnTickets(int eventId, EventInventory counter, int quantity) {
+        if (counter != null && counter.enter()) {
+            try {
+                counter.release(quantity);
+            } finally {
+                counter.exit();
+            }
+            return;
+        }
+        onEventChanged(eventId);
+    }
+
+    // Live in-memory count for an event, or -1 if it is not loaded
+    public static int liveAvailable(int eventId) {
+        InventoryEngine engine = instance;
+        return engine != null ? engine.getAvailable(eventId) : -1;
+    }
+
+    private InventoryEngine() {
+        this.writeQueue = new LinkedBlockingQueue<>(AppConfig.getInt("INVENTORY_QUEUE_CAPACITY", 100000));
+        this.batchSize = AppConfig.getInt("INVENTORY_BATCH_SIZE", 500);
+        this.writer = new Thread(this::writeLoop, "inventory-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    public Booking reserve(int userId, int eventId, int quantity) throws SQLException {
+        while (true) {
+            EventInventory inventory = load(eventId);
+            if (!inventory.enter()) {
+                continue;
+            }
+            try {
+                if (!inventory.isActive()) {
+                    throw new SQLException("Event is not active");
+                }
+                if (inventory.tryReserve(quantity) == EventInventory.INSUFFICIENT) {
+                    throw new SQLException("Insufficient tickets. Available: " + inventory.getAvailable());
+                }
+
+                BigDecimal totalPrice = inventory.getTicketPrice().multiply(new BigDecimal(quantity));
+                Booking booking = new Booking(userId, eventId, BookingDAO.generateBookingCode(), quantity, totalPrice);
+                AtomicInteger queued = queuedWrites.computeIfAbsent(eventId, id -> new AtomicInteger());
+                queued.incrementAndGet();
+                if (!writeQueue.offer(booking)) {
+                    queued.decrementAndGet();
+                    inventory.release(quantity);
+                    throw new SQLException("Booking queue is full, please retry");
+                }
+                enqueued.incrementAndGet();
+                return booking;
+            } finally {
+                inventory.exit();
+            }
+        }
+    }
+
+    /**
+     * Drops the in-memory counter for an event after its pending writes have
+     * reached MySQL. The next reservation reloads it from the table. Called
+     * whenever the event row is changed outside the engine.
+     *
+     * The retired counter stays in the map until then, so a concurrent load()
+     * finds it and waits for the same writes instead of reconciling against a
+     * table that does not include them yet.
+     */
+    public void evict(int eventId) {
+        EventInventory inventory = inventories.get(eventId);
+        if (inventory != null) {
+            inventory.retire();
+            awaitDrained(eventId);
+            inventories.remove(eventId, inventory);
+        }
+    }
+
+    public int getAvailable(int eventId) {
+        EventInventory inventory = inventories.get(eventId);
+        return inventory != null ? inventory.getAvailable() : -1;
+    }
+
+    public String getStats() {
+        return "events=" + inventories.size() + " reserved=" + enqueued.get() +
+               " persisted=" + persisted.sum() + " queued=" + writeQueue.size() +
+               " rejected=" + rejected.sum() + " retries=" + writeRetries.sum();
+    }
+
+    public void shutdown() {
+        awaitDrained();
+        running = false;
+        writer.interrupt();
+    }
+
+    private EventInventory load(int eventId) throws SQLException {
+        EventInventory inventory = inventories.get(eventId);
+        if (inventory != null && !inventory.isRetired()) {
+            return inventory;
+        }
+        synchronized (loadLock(eventId)) {
+            inventory = inventories.get(eventId);
+            if (inventory != null && inventory.isRetired()) {
+                // Being evicted: reload only once its queued reservations are in the table
+                inventory.retire();
+                if (!awaitDrained(eventId)) {
+                    throw new SQLException("Interrupted waiting for queued bookings of event " + eventId);
+                }
+                inventories.remove(eventId, inventory);
+                inventory = null;
+            }
+            if (inventory == null) {
+                Event event = eventDAO.getById(eventId);
+                if (event == null) {
+                    throw new SQLException("Event not found");
+                }
+                // The caller chose MEMORY from a cached copy, which may predate a strategy switch
+                if (!STRATEGY.equals(event.getBookingStrategy())) {
+                    throw new StrategyChangedException(eventId, event.getBookingStrategy());
+                }
+                inventory = reconcile(event);
+                inventories.put(eventId, inventory);
+            }
+            return inventory;
+        }
+    }
+
+    private void reconcileAll() {
+        try {
+            for (Event event : eventDAO.getByBookingStrategy(STRATEGY)) {
+                inventories.put(event.getEventId(), reconcile(event));
+            }
+            System.out.println("[INVENTORY] Loaded " + inventories.size() + " in-memory event(s)");
+        } catch (SQLException e) {
+            System.err.println("[INVENTORY] Startup reconciliation failed, loading lazily: " + e.getMessage());
+        }
+    }
+
+    private EventInventory reconcile(Event event) throws SQLException {
+        int fromLedger = event.getTotalCapacity() - bookingDAO.getBookedQuantity(event.getEventId());
+        int available = event.getAvailableTickets();
+        if (fromLedger != available) {
+            System.err.println("[INVENTORY] Event " + event.getEventId() + ": available_tickets=" + available +
+                    " but bookings leave " + fromLedger + ", using the lower value");
+            available = Math.max(0, Math.min(available, fromLedger));
+        }
+        return new EventInventory(event.getEventId(), available, event.getTicketPrice(),
+                "ACTIVE".equals(event.getStatus()));
+    }
+
+    private Object loadLock(int eventId) {
+        return loadLocks.computeIfAbsent(eventId, id -> new Object());
+    }
+
+    // Waits until the reservations of a retired counter have been written;
+    // false if it gave up (interrupted, or the engine is shutting down)
+    private boolean awaitDrained(int eventId) {
+        AtomicInteger queued = queuedWrites.get(eventId);
+        while (queued != null && queued.get() > 0) {
+            if (!pause()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Waits until everything queued before this call has been written
+    private boolean awaitDrained() {
+        long target = enqueued.get();
+        while (completed.get() < target) {
+            if (!pause()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean pause() {
+        if (!running) {
+            return false;
+        }
+        try {
+            Thread.sleep(5);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    // A booking has left the queue, written or rejected
+    private void settled(Booking booking) {
+        queuedWrites.get(booking.getEventId()).decrementAndGet();
+        completed.incrementAndGet();
+    }
+
+    private void writeLoop() {
+        List<Booking> batch = new ArrayList<>(batchSize);
+        long backoffMs = 50;
+
+        while (running) {
+            try {
+                if (batch.isEmpty()) {
+                    Booking first = writeQueue.poll(100, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                    writeQueue.drainTo(batch, batchSize - 1);
+                }
+
+                try {
+                    persistBatch(batch);
+                    persisted.add(batch.size());
+                    for (Booking booking : batch) {
+                        settled(booking);
+                    }
+                    batch.clear();
+                } catch (SQLException e) {
+                    if (isTransient(e)) {
+                        throw e;
+                    }
+                    // One bad row (duplicate code, CHECK on available_tickets, ...)
+                    // poisons the whole transaction, retry them one by one
+                    persistIndividually(batch);
+                }
+                backoffMs = 50;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (SQLException e) {
+                // Database unavailable or transaction aborted: keep the batch and retry, never drop reservations
+                writeRetries.increment();
+                System.err.println("[INVENTORY] Write-behind failed, retrying in " + backoffMs + " ms: " + e.getMessage());
+                try {
+                    Thread.sleep(backoffMs);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                backoffMs = Math.min(backoffMs * 2, 5000);
+            }
+        }
+    }
+
+    private void persistBatch(List<Booking> batch) throws SQLException {
+        Map<Integer, Integer> perEvent = new LinkedHashMap<>();
+        for (Booking booking : batch) {
+            perEvent.merge(booking.getEventId(), booking.getQuantity(), Integer::sum);
+        }
+
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                bookingDAO.insertBookings(conn, batch);
+                for (Map.Entry<Integer, Integer> entry : perEvent.entrySet()) {
+                    bookingDAO.decrementAvailableTickets(conn, entry.getKey(), entry.getValue());
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+        for (Map.Entry<Integer, Integer> entry : perEvent.entrySet()) {
+            EventCache.getInstance().ticketsChanged(entry.getKey(), -entry.getValue());
+        }
+        for (Booking booking : batch) {
+            HoldExpiry.track(booking.getBookingId());
+        }
+    }
+
+    // Removes each booking from the batch once it is settled, so a retry after
+    // a connection failure only repeats the ones that were not written yet
+    private void persistIndividually(List<Booking> batch) throws SQLException {
+        Iterator<Booking> it = batch.iterator();
+        while (it.hasNext()) {
+            Booking booking = it.next();
+            try {
+                persistBatch(List.of(booking));
+                persisted.increment();
+            } catch (SQLException e) {
+                if (isTransient(e)) {
+                    throw e;
+                }
+                rejected.increment();
+                EventInventory inventory = inventories.get(booking.getEventId());
+                if (inventory != null) {
+                    inventory.release(booking.getQuantity());
+                }
+                System.err.println("[INVENTORY] Dropped booking " + booking.getBookingCode() + ": " + e.getMessage());
+            }
+            it.remove();
+            settled(booking);
+        }
+    }
+
+    // Errors worth retrying the same rows for: lost connections, pool
+    // timeouts, deadlocks (SQLState classes 08 and 40) and lock wait timeouts
+    // (MySQL 1205, reported as HY000)
+    private static boolean isTransient(SQLException e) {
+        if (e instanceof SQLTransientException || e instanceof SQLRecoverableException || e.getErrorCode() == 1205) {
+            return true;
+        }
+        String state = e.getSQLState();
+        return state != null && (state.startsWith("08") || state.startsWith("40"));
+    }
+}
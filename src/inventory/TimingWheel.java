@@ -0,0 +1,106 @@
+package inventory;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Hashed timing wheel of int ids. Each slot holds the ids whose deadline
+ * falls on a tick that maps to it, as two parallel int arrays (8 bytes per
+ * entry), so millions of deadlines cost tens of megabytes and no objects.
+ * Adding is O(1); advancing the wheel only touches the slots that came due.
+ * Deadlines further away than one revolution stay in their slot and are
+ * skipped until their round comes up.
+ *
+ * add() may be called from any thread; advance() from one thread only.
+ */
+final class TimingWheel {
+
+    private static final class Slot {
+        int[] ids = new int[4];
+        int[] ticks = new int[4];
+        int size;
+    }
+
+    private final long originMs;
+    private final long tickMs;
+    private final Slot[] slots;
+    private final int mask;
+    // Next tick to process; only advanced while holding that tick's slot
+    private volatile long cursor;
+
+    TimingWheel(long originMs, long tickMs, int slotCount) {
+        if (Integer.bitCount(slotCount) != 1) {
+            throw new IllegalArgumentException("Slot count must be a power of two: " + slotCount);
+        }
+        this.originMs = originMs;
+        this.tickMs = tickMs;
+        this.slots = new Slot[slotCount];
+        for (int i = 0; i < slotCount; i++) {
+            slots[i] = new Slot();
+        }
+        this.mask = slotCount - 1;
+    }
+
+    // Schedules id for deadlineMs; a deadline already passed fires on the next advance
+    void add(int id, long deadlineMs) {
+        long deadlineTick = Math.max(0, (deadlineMs - originMs + tickMs - 1) / tickMs);
+        while (true) {
+            long tick = Math.max(deadlineTick, cursor);
+            Slot slot = slots[(int) (tick & mask)];
+            synchronized (slot) {
+                // If the cursor moved past tick meanwhile, this slot may already be done
+                if (cursor > tick) {
+                    continue;
+                }
+                if (slot.size == slot.ids.length) {
+                    slot.ids = Arrays.copyOf(slot.ids, slot.size * 2);
+                    slot.ticks = Arrays.copyOf(slot.ticks, slot.size * 2);
+                }
+                slot.ids[slot.size] = id;
+                slot.ticks[slot.size] = (int) tick;
+                slot.size++;
+                return;
+            }
+        }
+    }
+
+    // Hands every id whose deadline is <= nowMs to expired; returns how many
+    int advance(long nowMs, IntConsumer expired) {
+        long nowTick = (nowMs - originMs) / tickMs;
+        int fired = 0;
+        for (long tick = cursor; tick <= nowTick; tick++) {
+            Slot slot = slots[(int) (tick & mask)];
+            synchronized (slot) {
+                int kept = 0;
+                for (int i = 0; i < slot.size; i++) {
+                    if (slot.ticks[i] <= tick) {
+                        expired.accept(slot.ids[i]);
+                        fired++;
+                    } else {
+                        slot.ids[kept] = slot.ids[i];
+                        slot.ticks[kept] = slot.ticks[i];
+                        kept++;
+                    }
+                }
+                slot.size = kept;
+                // Give back memory after a burst drained
+                if (slot.ids.length > 64 && kept < slot.ids.length / 4) {
+                    slot.ids = Arrays.copyOf(slot.ids, Math.max(4, kept * 2));
+                    slot.ticks = Arrays.copyOf(slot.ticks, Math.max(4, kept * 2));
+                }
+                cursor = tick + 1;
+            }
+        }
+        return fired;
+    }
+
+    long size() {
+        long total = 0;
+        for (Slot slot : slots) {
+            synchronized (slot) {
+                total += slot.size;
+            }
+        }
+        return total;
+    }
+}
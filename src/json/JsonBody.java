@@ -0,0 +1,152 @@
+package json;
+
+import config.AppConfig;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A parsed JSON request body: one top-level object read in a single pass
+ * into a typed field map. Values are String, Long, BigDecimal, Boolean,
+ * null, nested JsonBody objects or List for arrays.
+ *
+ * The typed getters throw {@link JsonException} (400) so a bad request is
+ * reported as such instead of surfacing as a 500.
+ */
+public final class JsonBody {
+    // Read lazily so parse() can be used without a .env (benchmarks)
+    private static final class Limits {
+        static final int MAX_BODY_BYTES = AppConfig.getInt("SERVER_MAX_BODY_BYTES", 64 * 1024);
+    }
+
+    private final Map<String, Object> fields;
+
+    JsonBody(Map<String, Object> fields) {
+        this.fields = fields;
+    }
+
+    // Reads and parses a request body. A Content-Length over the limit is
+    // rejected before reading; a chunked body is cut off as soon as it passes it.
+    public static JsonBody read(InputStream in, String contentLength) throws IOException {
+        int max = Limits.MAX_BODY_BYTES;
+        if (contentLength != null) {
+            try {
+                if (Long.parseLong(contentLength.trim()) > max) {
+                    throw tooLarge(max);
+                }
+            } catch (NumberFormatException e) {
+                throw new JsonException(400, "Invalid Content-Length");
+            }
+        }
+
+        byte[] buf = new byte[Math.min(max + 1, 1024)];
+        int len = 0;
+        int n;
+        while ((n = in.read(buf, len, buf.length - len)) > 0) {
+            len += n;
+            if (len > max) {
+                throw tooLarge(max);
+            }
+            if (len == buf.length) {
+                buf = Arrays.copyOf(buf, Math.min(max + 1, buf.length * 2));
+            }
+        }
+        return parse(buf, 0, len);
+    }
+
+    public static JsonBody parse(byte[] data, int offset, int length) {
+        return new JsonReader(data, offset, length).readDocument();
+    }
+
+    public static JsonBody parse(String json) {
+        byte[] bytes = json.getBytes(java.nio.charset.StandardCharsets.UTF_8);
+        return parse(bytes, 0, bytes.length);
+    }
+
+    public boolean has(String name) {
+        return fields.containsKey(name);
+    }
+
+    // Required string field
+    public String getString(String name) {
+        Object value = require(name);
+        if (!(value instanceof String)) {
+            throw wrongType(name, "a string");
+        }
+        return (String) value;
+    }
+
+    // Absent or null gives null
+    public String optString(String name) {
+        Object value = fields.get(name);
+        if (value != null && !(value instanceof String)) {
+            throw wrongType(name, "a string");
+        }
+        return (String) value;
+    }
+
+    public int getInt(String name) {
+        Object value = require(name);
+        if (!(value instanceof Long)) {
+            throw wrongType(name, "an integer");
+        }
+        long v = (Long) value;
+        if (v < Integer.MIN_VALUE || v > Integer.MAX_VALUE) {
+            throw new JsonException(400, "Field out of range: " + name);
+        }
+        return (int) v;
+    }
+
+    public BigDecimal getDecimal(String name) {
+        Object value = require(name);
+        if (value instanceof Long) {
+            return BigDecimal.valueOf((Long) value);
+        }
+        if (!(value instanceof BigDecimal)) {
+            throw wrongType(name, "a number");
+        }
+        return (BigDecimal) value;
+    }
+
+    public JsonBody getObject(String name) {
+        Object value = require(name);
+        if (!(value instanceof JsonBody)) {
+            throw wrongType(name, "an object");
+        }
+        return (JsonBody) value;
+    }
+
+    @SuppressWarnings("unchecked")
+    public List<Object> getList(String name) {
+        Object value = require(name);
+        if (!(value instanceof List)) {
+            throw wrongType(name, "an array");
+        }
+        return Collections.unmodifiableList((List<Object>) value);
+    }
+
+    public Object get(String name) {
+        return fields.get(name);
+    }
+
+    private Object require(String name) {
+        Object value = fields.get(name);
+        if (value == null) {
+            throw new JsonException(400, "Missing field: " + name);
+        }
+        return value;
+    }
+
+    private static JsonException wrongType(String name, String expected) {
+        return new JsonException(400, "Field " + name + " must be " + expected);
+    }
+
+    private static JsonException tooLarge(int max) {
+        return new JsonException(413, "Request body exceeds " + max + " bytes");
+    }
+}
@@ -0,0 +1,20 @@
+package json;
+
+/**
+ * Request body that cannot be used: malformed JSON (400), a missing or
+ * mistyped field (400) or a body over the size limit (413).
+ */
+public class JsonException extends IllegalArgumentException {
+    private static final long serialVersionUID = 1L;
+
+    private final int status;
+
+    public JsonException(int status, String message) {
+        super(message);
+        this.status = status;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+}
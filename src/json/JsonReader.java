@@ -0,0 +1,299 @@
+package json;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Single-pass recursive descent parser over UTF-8 bytes. Anything that is
+ * not strict RFC 8259 JSON is rejected with a 400 {@link JsonException}.
+ */
+final class JsonReader {
+    private static final int MAX_DEPTH = 32;
+
+    private final byte[] data;
+    private final int end;
+    private int pos;
+    private int depth;
+
+    JsonReader(byte[] data, int offset, int length) {
+        this.data = data;
+        this.pos = offset;
+        this.end = offset + length;
+    }
+
+    JsonBody readDocument() {
+        skipWhitespace();
+        if (pos >= end) {
+            throw new JsonException(400, "Request body is required");
+        }
+        if (data[pos] != '{') {
+            throw malformed("expected an object");
+        }
+        JsonBody body = readObject();
+        skipWhitespace();
+        if (pos < end) {
+            throw malformed("unexpected data after the object");
+        }
+        return body;
+    }
+
+    private Object readValue() {
+        skipWhitespace();
+        if (pos >= end) {
+            throw malformed("unexpected end of input");
+        }
+        byte b = data[pos];
+        switch (b) {
+            case '{': return readObject();
+            case '[': return readArray();
+            case '"': return readString();
+            case 't': expectLiteral("true"); return Boolean.TRUE;
+            case 'f': expectLiteral("false"); return Boolean.FALSE;
+            case 'n': expectLiteral("null"); return null;
+            default:
+                if (b == '-' || (b >= '0' && b <= '9')) {
+                    return readNumber();
+                }
+                throw malformed("unexpected character");
+        }
+    }
+
+    private JsonBody readObject() {
+        enter();
+        pos++; // '{'
+        Map<String, Object> fields = new HashMap<>();
+        skipWhitespace();
+        if (peek() == '}') {
+            pos++;
+            depth--;
+            return new JsonBody(fields);
+        }
+        while (true) {
+            skipWhitespace();
+            if (peek() != '"') {
+                throw malformed("expected a field name");
+            }
+            String name = readString();
+            skipWhitespace();
+            if (peek() != ':') {
+                throw malformed("expected ':'");
+            }
+            pos++;
+            fields.put(name, readValue());
+            skipWhitespace();
+            byte b = peek();
+            pos++;
+            if (b == '}') {
+                depth--;
+                return new JsonBody(fields);
+            }
+            if (b != ',') {
+                throw malformed("expected ',' or '}'");
+            }
+        }
+    }
+
+    private List<Object> readArray() {
+        enter();
+        pos++; // '['
+        List<Object> items = new ArrayList<>();
+        skipWhitespace();
+        if (peek() == ']') {
+            pos++;
+            depth--;
+            return items;
+        }
+        while (true) {
+            items.add(readValue());
+            skipWhitespace();
+            byte b = peek();
+            pos++;
+            if (b == ']') {
+                depth--;
+                return items;
+            }
+            if (b != ',') {
+                throw malformed("expected ',' or ']'");
+            }
+        }
+    }
+
+    private String readString() {
+        pos++; // opening quote
+        int start = pos;
+        // Fast path: no escapes, decode the slice directly
+        while (pos < end) {
+            byte b = data[pos];
+            if (b == '"') {
+                String s = new String(data, start, pos - start, StandardCharsets.UTF_8);
+                pos++;
+                return s;
+            }
+            if (b == '\\') {
+                break;
+            }
+            if ((b & 0xFF) < 0x20) {
+                throw malformed("control character in string");
+            }
+            pos++;
+        }
+
+        StringBuilder sb = new StringBuilder(pos - start + 16);
+        sb.append(new String(data, start, pos - start, StandardCharsets.UTF_8));
+        while (pos < end) {
+            byte b = data[pos];
+            if (b == '"') {
+                pos++;
+                return sb.toString();
+            }
+            if (b == '\\') {
+                pos++;
+                sb.append(readEscape());
+                continue;
+            }
+            int runStart = pos;
+            while (pos < end && data[pos] != '"' && data[pos] != '\\') {
+                if ((data[pos] & 0xFF) < 0x20) {
+                    throw malformed("control character in string");
+                }
+                pos++;
+            }
+            sb.append(new String(data, runStart, pos - runStart, StandardCharsets.UTF_8));
+        }
+        throw malformed("unterminated string");
+    }
+
+    private char readEscape() {
+        if (pos >= end) {
+            throw malformed("unterminated string");
+        }
+        byte b = data[pos++];
+        switch (b) {
+            case '"':  return '"';
+            case '\\': return '\\';
+            case '/':  return '/';
+            case 'b':  return '\b';
+            case 'f':  return '\f';
+            case 'n':  return '\n';
+            case 'r':  return '\r';
+            case 't':  return '\t';
+            case 'u':
+                if (pos + 4 > end) {
+                    throw malformed("bad unicode escape");
+                }
+                int c = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(data[pos++], 16);
+                    if (digit < 0) {
+                        throw malformed("bad unicode escape");
+                    }
+                    c = (c << 4) | digit;
+                }
+                return (char) c;
+            default:
+                throw malformed("bad escape");
+        }
+    }
+
+    // Integers that fit a long come back as Long, everything else as BigDecimal
+    private Object readNumber() {
+        int start = pos;
+        boolean integral = true;
+        if (data[pos] == '-') {
+            pos++;
+        }
+        if (peek() == '0') {
+            pos++;
+        } else if (!digits()) {
+            throw malformed("bad number");
+        }
+        if (pos < end && data[pos] == '.') {
+            integral = false;
+            pos++;
+            if (!digits()) {
+                throw malformed("bad number");
+            }
+        }
+        if (pos < end && (data[pos] == 'e' || data[pos] == 'E')) {
+            integral = false;
+            pos++;
+            if (pos < end && (data[pos] == '+' || data[pos] == '-')) {
+                pos++;
+            }
+            if (!digits()) {
+                throw malformed("bad number");
+            }
+        }
+
+        int length = pos - start;
+        if (integral && length <= 18) {
+            long v = 0;
+            boolean negative = data[start] == '-';
+            for (int i = negative ? start + 1 : start; i < pos; i++) {
+                v = v * 10 + (data[i] - '0');
+            }
+            return negative ? -v : v;
+        }
+        BigDecimal value = new BigDecimal(new String(data, start, length, StandardCharsets.US_ASCII));
+        if (integral) {
+            try {
+                return value.longValueExact();
+            } catch (ArithmeticException e) {
+                return value;
+            }
+        }
+        return value;
+    }
+
+    private boolean digits() {
+        int start = pos;
+        while (pos < end && data[pos] >= '0' && data[pos] <= '9') {
+            pos++;
+        }
+        return pos > start;
+    }
+
+    private void expectLiteral(String literal) {
+        int n = literal.length();
+        if (pos + n > end) {
+            throw malformed("unexpected end of input");
+        }
+        for (int i = 0; i < n; i++) {
+            if (data[pos + i] != literal.charAt(i)) {
+                throw malformed("unexpected character");
+            }
+        }
+        pos += n;
+    }
+
+    private void enter() {
+        if (++depth > MAX_DEPTH) {
+            throw malformed("nesting too deep");
+        }
+    }
+
+    private byte peek() {
+        if (pos >= end) {
+            throw malformed("unexpected end of input");
+        }
+        return data[pos];
+    }
+
+    private void skipWhitespace() {
+        while (pos < end) {
+            byte b = data[pos];
+            if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+                return;
+            }
+            pos++;
+        }
+    }
+
+    private JsonException malformed(String reason) {
+        return new JsonException(400, "Malformed JSON at byte " + pos + ": " + reason);
+    }
+}
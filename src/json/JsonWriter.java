@@ -0,0 +1,281 @@
+package json;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+
+/**
+ * Minimal JSON writer that encodes straight into a growable UTF-8 byte
+ * buffer. Numbers are written digit by digit (no boxing, no format string)
+ * and strings are escaped per RFC 8259.
+ *
+ * One instance per thread is kept by {@link #local()}; reset() reuses the
+ * buffer, so steady-state encoding does not allocate for ints and ASCII text.
+ */
+public final class JsonWriter {
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+    private static final byte[] NULL = { 'n', 'u', 'l', 'l' };
+    private static final byte[] TRUE = { 't', 'r', 'u', 'e' };
+    private static final byte[] FALSE = { 'f', 'a', 'l', 's', 'e' };
+    private static final byte[] MIN_INT = "-2147483648".getBytes();
+    private static final byte[] MIN_LONG = "-9223372036854775808".getBytes();
+    private static final int MAX_RETAINED = 64 * 1024;
+
+    private static final ThreadLocal<JsonWriter> LOCAL = ThreadLocal.withInitial(() -> new JsonWriter(512));
+
+    private byte[] buf;
+    private int len;
+    // true when the next value in the current object/array needs a comma first
+    private boolean needComma;
+
+    public JsonWriter(int initialCapacity) {
+        this.buf = new byte[initialCapacity];
+    }
+
+    // Thread-local writer, already reset
+    public static JsonWriter local() {
+        return LOCAL.get().reset();
+    }
+
+    public JsonWriter reset() {
+        if (buf.length > MAX_RETAINED) {
+            buf = new byte[512];
+        }
+        len = 0;
+        needComma = false;
+        return this;
+    }
+
+    public JsonWriter beginObject() {
+        separator();
+        put((byte) '{');
+        needComma = false;
+        return this;
+    }
+
+    public JsonWriter endObject() {
+        put((byte) '}');
+        needComma = true;
+        return this;
+    }
+
+    public JsonWriter beginArray() {
+        separator();
+        put((byte) '[');
+        needComma = false;
+        return this;
+    }
+
+    public JsonWriter endArray() {
+        put((byte) ']');
+        needComma = true;
+        return this;
+    }
+
+    // Field names are trusted ASCII literals from our own code
+    public JsonWriter name(String name) {
+        separator();
+        put((byte) '"');
+        int n = name.length();
+        ensure(n + 2);
+        for (int i = 0; i < n; i++) {
+            buf[len++] = (byte) name.charAt(i);
+        }
+        buf[len++] = '"';
+        buf[len++] = ':';
+        needComma = false;
+        return this;
+    }
+
+    public JsonWriter value(String s) {
+        separator();
+        if (s == null) {
+            putAll(NULL);
+        } else {
+            writeQuoted(s);
+        }
+        needComma = true;
+        return this;
+    }
+
+    public JsonWriter value(int v) {
+        separator();
+        writeLong(v);
+        needComma = true;
+        return this;
+    }
+
+    public JsonWriter value(long v) {
+        separator();
+        writeLong(v);
+        needComma = true;
+        return this;
+    }
+
+    public JsonWriter value(boolean v) {
+        separator();
+        putAll(v ? TRUE : FALSE);
+        needComma = true;
+        return this;
+    }
+
+    // Money: always two decimals, like the old "%.2f" but locale independent
+    public JsonWriter money(BigDecimal v) {
+        separator();
+        if (v == null) {
+            putAll(NULL);
+        } else {
+            writeAscii(v.setScale(2, RoundingMode.HALF_UP).toPlainString());
+        }
+        needComma = true;
+        return this;
+    }
+
+    // Any object rendered through toString() as a JSON string (timestamps)
+    public JsonWriter valueOf(Object o) {
+        return value(o == null ? null : o.toString());
+    }
+
+    public JsonWriter nullValue() {
+        separator();
+        putAll(NULL);
+        needComma = true;
+        return this;
+    }
+
+    public int size() {
+        return len;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buf, len);
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(buf, 0, len);
+    }
+
+    private void separator() {
+        if (needComma) {
+            put((byte) ',');
+        }
+    }
+
+    private void writeQuoted(String s) {
+        int n = s.length();
+        ensure(n + 2);
+        buf[len++] = '"';
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x20 && c < 0x80 && c != '"' && c != '\\') {
+                ensure(1);
+                buf[len++] = (byte) c;
+            } else if (c < 0x80) {
+                writeEscaped(c);
+            } else if (c < 0x800) {
+                ensure(2);
+                buf[len++] = (byte) (0xC0 | (c >> 6));
+                buf[len++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                ensure(4);
+                buf[len++] = (byte) (0xF0 | (cp >> 18));
+                buf[len++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                buf[len++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                buf[len++] = (byte) (0x80 | (cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // Lone surrogate: not valid UTF-16, emit it escaped
+                writeUnicodeEscape(c);
+            } else {
+                ensure(3);
+                buf[len++] = (byte) (0xE0 | (c >> 12));
+                buf[len++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buf[len++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        ensure(1);
+        buf[len++] = '"';
+    }
+
+    private void writeEscaped(char c) {
+        switch (c) {
+            case '"':  putEscape('"'); break;
+            case '\\': putEscape('\\'); break;
+            case '\n': putEscape('n'); break;
+            case '\r': putEscape('r'); break;
+            case '\t': putEscape('t'); break;
+            case '\b': putEscape('b'); break;
+            case '\f': putEscape('f'); break;
+            default:   writeUnicodeEscape(c);
+        }
+    }
+
+    private void putEscape(char c) {
+        ensure(2);
+        buf[len++] = '\\';
+        buf[len++] = (byte) c;
+    }
+
+    private void writeUnicodeEscape(char c) {
+        ensure(6);
+        buf[len++] = '\\';
+        buf[len++] = 'u';
+        buf[len++] = HEX[(c >> 12) & 0xF];
+        buf[len++] = HEX[(c >> 8) & 0xF];
+        buf[len++] = HEX[(c >> 4) & 0xF];
+        buf[len++] = HEX[c & 0xF];
+    }
+
+    private void writeLong(long v) {
+        if (v == Long.MIN_VALUE) {
+            putAll(MIN_LONG);
+            return;
+        }
+        if (v == Integer.MIN_VALUE) {
+            putAll(MIN_INT);
+            return;
+        }
+        ensure(20);
+        if (v < 0) {
+            buf[len++] = '-';
+            v = -v;
+        }
+        int digits = 1;
+        for (long t = v; t >= 10; t /= 10) {
+            digits++;
+        }
+        int pos = len + digits;
+        len = pos;
+        do {
+            buf[--pos] = (byte) ('0' + (v % 10));
+            v /= 10;
+        } while (v != 0);
+    }
+
+    private void writeAscii(String s) {
+        int n = s.length();
+        ensure(n);
+        for (int i = 0; i < n; i++) {
+            buf[len++] = (byte) s.charAt(i);
+        }
+    }
+
+    private void put(byte b) {
+        ensure(1);
+        buf[len++] = b;
+    }
+
+    private void putAll(byte[] bytes) {
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buf, len, bytes.length);
+        len += bytes.length;
+    }
+
+    private void ensure(int extra) {
+        if (len + extra > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, len + extra));
+        }
+    }
+}
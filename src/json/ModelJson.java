@@ -0,0 +1,83 @@
+package json;
+
+import models.Booking;
+import models.Event;
+import models.User;
+
+/**
+ * JSON shapes of the models, shared by all controllers.
+ *
+ * The encode methods fill and return the calling thread's {@link JsonWriter};
+ * the result is only valid until the next encode call on the same thread.
+ */
+public final class ModelJson {
+
+    private ModelJson() {
+    }
+
+    public static JsonWriter encode(Booking b) {
+        JsonWriter w = JsonWriter.local();
+        write(w, b);
+        return w;
+    }
+
+    public static JsonWriter encode(Event e) {
+        JsonWriter w = JsonWriter.local();
+        write(w, e);
+        return w;
+    }
+
+    public static JsonWriter encode(User u) {
+        JsonWriter w = JsonWriter.local();
+        write(w, u);
+        return w;
+    }
+
+    // {"error":"..."} with the message escaped
+    public static JsonWriter error(String message) {
+        return JsonWriter.local().beginObject().name("error").value(message).endObject();
+    }
+
+    public static void write(JsonWriter w, Booking b) {
+        w.beginObject()
+         .name("bookingId").value(b.getBookingId())
+         .name("userId").value(b.getUserId())
+         .name("eventId").value(b.getEventId())
+         .name("bookingCode").value(b.getBookingCode())
+         .name("quantity").value(b.getQuantity())
+         .name("totalPrice").money(b.getTotalPrice())
+         .name("status").value(b.getStatus())
+         .name("paymentMethod").value(b.getPaymentMethod())
+         .name("bookingDate").valueOf(b.getBookingDate())
+         .name("paymentDate").valueOf(b.getPaymentDate())
+         .endObject();
+    }
+
+    public static void write(JsonWriter w, Event e) {
+        w.beginObject()
+         .name("eventId").value(e.getEventId())
+         .name("organizerId").value(e.getOrganizerId())
+         .name("eventName").value(e.getEventName())
+         .name("description").value(e.getDescription() != null ? e.getDescription() : "")
+         .name("eventDate").valueOf(e.getEventDate())
+         .name("location").value(e.getLocation())
+         .name("totalCapacity").value(e.getTotalCapacity())
+         .name("availableTickets").value(e.getAvailableTickets())
+         .name("ticketPrice").money(e.getTicketPrice())
+         .name("status").value(e.getStatus())
+         .name("bookingStrategy").value(e.getBookingStrategy())
+         .endObject();
+    }
+
+    public static void write(JsonWriter w, User u) {
+        w.beginObject()
+         .name("userId").value(u.getUserId())
+         .name("username").value(u.getUsername())
+         .name("email").value(u.getEmail())
+         .name("fullName").value(u.getFullName())
+         .name("phone").value(u.getPhone() != null ? u.getPhone() : "")
+         .name("role").value(u.getRole())
+         .name("createdAt").valueOf(u.getCreatedAt())
+         .endObject();
+    }
+}
@@ -0,0 +1,130 @@
+package metrics;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Process-wide metric registry, rendered in the Prometheus text format.
+ *
+ * Metrics are registered once (usually into static fields) and updated
+ * without locks: counters are LongAdders, latencies are
+ * {@link LatencyHistogram}s, gauges are read only when scraped. Labels are
+ * passed pre-rendered, e.g. {@code phase="commit"}, so the hot path never
+ * builds strings.
+ */
+public final class Metrics {
+
+    // Upper bounds of the exported histogram buckets, in microseconds
+    private static final long[] BUCKETS_MICROS = {
+        100, 250, 500, 1_000, 2_500, 5_000, 10_000, 25_000, 50_000,
+        100_000, 250_000, 500_000, 1_000_000, 2_500_000, 5_000_000, 10_000_000
+    };
+    private static final String[] BUCKET_LABELS = new String[BUCKETS_MICROS.length];
+    static {
+        for (int i = 0; i < BUCKETS_MICROS.length; i++) {
+            // Plain seconds, e.g. le="0.0001" rather than 1.0E-4
+            BUCKET_LABELS[i] = "le=\"" + BigDecimal.valueOf(BUCKETS_MICROS[i], 6).stripTrailingZeros().toPlainString() + "\"";
+        }
+    }
+
+    private static final Map<String, Family> FAMILIES = new ConcurrentSkipListMap<>();
+
+    private Metrics() {
+    }
+
+    public static LongAdder counter(String name, String help, String labels) {
+        return (LongAdder) family(name, help, "counter").series.computeIfAbsent(labels, l -> new LongAdder());
+    }
+
+    public static LatencyHistogram histogram(String name, String help, String labels) {
+        return (LatencyHistogram) family(name, help, "histogram").series.computeIfAbsent(labels, l -> new LatencyHistogram());
+    }
+
+    public static void gauge(String name, String help, String labels, DoubleSupplier value) {
+        family(name, help, "gauge").series.put(labels, value);
+    }
+
+    // A counter kept elsewhere (e.g. a stats object), read when scraped
+    public static void counterFunction(String name, String help, String labels, DoubleSupplier value) {
+        family(name, help, "counter").series.put(labels, value);
+    }
+
+    // Label value escaped for the exposition format
+    public static String label(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    public static String scrape() {
+        StringBuilder out = new StringBuilder(8192);
+        for (Map.Entry<String, Family> entry : FAMILIES.entrySet()) {
+            String name = entry.getKey();
+            Family family = entry.getValue();
+            out.append("# HELP ").append(name).append(' ').append(family.help).append('\n');
+            out.append("# TYPE ").append(name).append(' ').append(family.type).append('\n');
+            for (Map.Entry<String, Object> series : new ConcurrentSkipListMap<>(family.series).entrySet()) {
+                String labels = series.getKey();
+                Object metric = series.getValue();
+                if (metric instanceof LongAdder) {
+                    sample(out, name, labels, null, ((LongAdder) metric).sum());
+                } else if (metric instanceof DoubleSupplier) {
+                    sample(out, name, labels, null, ((DoubleSupplier) metric).getAsDouble());
+                } else {
+                    writeHistogram(out, name, labels, (LatencyHistogram) metric);
+                }
+            }
+        }
+        return out.toString();
+    }
+
+    private static void writeHistogram(StringBuilder out, String name, String labels, LatencyHistogram histogram) {
+        long[] cumulative = histogram.cumulativeCounts(BUCKETS_MICROS);
+        for (int i = 0; i < BUCKETS_MICROS.length; i++) {
+            sample(out, name + "_bucket", labels, BUCKET_LABELS[i], cumulative[i]);
+        }
+        long count = histogram.getCount();
+        sample(out, name + "_bucket", labels, "le=\"+Inf\"", count);
+        sample(out, name + "_sum", labels, null, histogram.getSumMicros() / 1e6);
+        sample(out, name + "_count", labels, null, count);
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, String extra, double value) {
+        out.append(name);
+        if (!labels.isEmpty() || extra != null) {
+            out.append('{').append(labels);
+            if (extra != null) {
+                out.append(labels.isEmpty() ? "" : ",").append(extra);
+            }
+            out.append('}');
+        }
+        out.append(' ');
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            out.append((long) value);
+        } else {
+            out.append(value);
+        }
+        out.append('\n');
+    }
+
+    private static Family family(String name, String help, String type) {
+        Family family = FAMILIES.computeIfAbsent(name, n -> new Family(help, type));
+        if (!family.type.equals(type)) {
+            throw new IllegalArgumentException("Metric " + name + " is already a " + family.type);
+        }
+        return family;
+    }
+
+    private static final class Family {
+        final String help;
+        final String type;
+        final Map<String, Object> series = new ConcurrentHashMap<>();
+
+        Family(String help, String type) {
+            this.help = help;
+            this.type = type;
+        }
+    }
+}
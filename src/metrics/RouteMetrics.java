@@ -0,0 +1,35 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Request count per status and latency histogram of one route. Created once
+ * per registered route, so recording a request is a histogram increment plus
+ * an array lookup; the per-status counter is registered on first use.
+ */
+public final class RouteMetrics {
+    private static final String REQUESTS = "http_requests_total";
+    private static final String DURATION = "http_request_duration_seconds";
+
+    private final String labels;
+    private final LatencyHistogram latency;
+    private final AtomicReferenceArray<LongAdder> byStatus = new AtomicReferenceArray<>(600);
+
+    public RouteMetrics(String method, String route) {
+        this.labels = "method=\"" + Metrics.label(method) + "\",route=\"" + Metrics.label(route) + "\"";
+        this.latency = Metrics.histogram(DURATION, "Time from routing to the end of the handler.", labels);
+    }
+
+    public void record(int status, long nanos) {
+        latency.recordNanos(nanos);
+        int slot = status >= 100 && status < 600 ? status : 0;
+        LongAdder counter = byStatus.get(slot);
+        if (counter == null) {
+            counter = Metrics.counter(REQUESTS, "HTTP requests by route and status.",
+                                      labels + ",status=\"" + (slot == 0 ? "none" : String.valueOf(status)) + "\"");
+            byStatus.set(slot, counter);
+        }
+        counter.increment();
+    }
+}
@@ -14,11 +14,32 @@ public class Event {
     private int availableTickets;
     private BigDecimal ticketPrice;
     private String status;
+    private String bookingStrategy;
+    // Rows in event_inventory_buckets, 0 unless the event is BUCKETED
+    private int bucketCount;
     private Timestamp createdAt;
     private Timestamp updatedAt;
     
     public Event() {}
     
+    // Copy, so a shared (cached) instance is never mutated by its readers
+    public Event(Event other) {
+        this.eventId = other.eventId;
+        this.organizerId = other.organizerId;
+        this.eventName = other.eventName;
+        this.description = other.description;
+        this.eventDate = other.eventDate;
+        this.location = other.location;
+        this.totalCapacity = other.totalCapacity;
+        this.availableTickets = other.availableTickets;
+        this.ticketPrice = other.ticketPrice;
+        this.status = other.status;
+        this.bookingStrategy = other.bookingStrategy;
+        this.bucketCount = other.bucketCount;
+        this.createdAt = other.createdAt;
+        this.updatedAt = other.updatedAt;
+    }
+
     // Getters and Setters
     public int getEventId() { return eventId; }
     public void setEventId(int eventId) { this.eventId = eventId; }
@@ -50,6 +71,12 @@ public class Event {
     public String getStatus() { return status; }
     public void setStatus(String status) { this.status = status; }
     
+    public String getBookingStrategy() { return bookingStrategy; }
+    public void setBookingStrategy(String bookingStrategy) { this.bookingStrategy = bookingStrategy; }
+    
+    public int getBucketCount() { return bucketCount; }
+    public void setBucketCount(int bucketCount) { this.bucketCount = bucketCount; }
+    
     public Timestamp getCreatedAt() { return createdAt; }
     public void setCreatedAt(Timestamp createdAt) { this.createdAt = createdAt; }
     
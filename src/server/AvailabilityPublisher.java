@@ -0,0 +1,170 @@
+package server;
+
+import com.sun.net.httpserver.HttpExchange;
+import config.AppConfig;
+import dao.EventCache;
+import json.JsonException;
+import json.JsonWriter;
+import models.Event;
+import services.EventService;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Live ticket availability for GET /api/events/{id}/availability/stream.
+ *
+ * Every change to an events row reaches EventCache.invalidate(); for events
+ * somebody is watching that only marks the id dirty. Once per SSE_TICK_MS the
+ * publisher thread reads each dirty event once (through the event cache, as
+ * GET /api/events/{id} does) and, if availability or status changed, sends
+ * one frame to all of its subscribers. So a tick costs one read per changed
+ * event whatever the number of viewers, and bursts of bookings collapse into
+ * one update. Watched events are also re-read every SSE_REFRESH_MS to pick up
+ * changes made by other servers.
+ */
+public final class AvailabilityPublisher {
+
+    private static volatile AvailabilityPublisher instance;
+
+    private final SseHub hub = new SseHub("availability");
+    private final EventService eventService = new EventService();
+    private final Set<Integer> dirty = ConcurrentHashMap.newKeySet();
+    // Last frame payload per event, so unchanged re-reads send nothing
+    private final Map<Integer, String> lastSent = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final long tickMs;
+    private final long refreshMs;
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    public static AvailabilityPublisher getInstance() {
+        AvailabilityPublisher publisher = instance;
+        if (publisher == null) {
+            synchronized (AvailabilityPublisher.class) {
+                publisher = instance;
+                if (publisher == null) {
+                    publisher = new AvailabilityPublisher();
+                    publisher.worker.start();
+                    instance = publisher;
+                }
+            }
+        }
+        return publisher;
+    }
+
+    public static void shutdownIfStarted() {
+        AvailabilityPublisher publisher = instance;
+        if (publisher != null) {
+            publisher.running = false;
+            publisher.worker.interrupt();
+            publisher.hub.shutdown();
+        }
+    }
+
+    public static String getStatsIfStarted() {
+        AvailabilityPublisher publisher = instance;
+        return publisher != null ? "subscribers=" + publisher.hub.size() + " events=" + publisher.hub.topics().size() : "off";
+    }
+
+    private AvailabilityPublisher() {
+        this.tickMs = AppConfig.getLong("SSE_TICK_MS", 250);
+        this.refreshMs = AppConfig.getLong("SSE_REFRESH_MS", 5000);
+        this.worker = new Thread(this::run, "availability-publisher");
+        this.worker.setDaemon(true);
+        EventCache.getInstance().addInvalidationListener(eventId -> {
+            if (hub.hasSubscribers(eventId)) {
+                dirty.add(eventId);
+            }
+        });
+    }
+
+    // Opens the stream with the current availability; 404 for unknown events
+    public void subscribe(int eventId, HttpExchange exchange) throws Exception {
+        Event event = eventService.getEventById(eventId);
+        if (event == null) {
+            throw new JsonException(404, "Event not found");
+        }
+        byte[] first = frame(event, true);
+        if (!hub.subscribe(eventId, exchange, first)) {
+            throw new JsonException(503, "Too many availability streams, poll GET /api/events/" + eventId);
+        }
+    }
+
+    private void run() {
+        long nextRefresh = System.currentTimeMillis() + refreshMs;
+        while (running) {
+            try {
+                Thread.sleep(tickMs);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (refreshMs > 0 && System.currentTimeMillis() >= nextRefresh) {
+                dirty.addAll(hub.topics());
+                nextRefresh = System.currentTimeMillis() + refreshMs;
+            }
+            Iterator<Integer> it = dirty.iterator();
+            while (it.hasNext()) {
+                int eventId = it.next();
+                it.remove();
+                publish(eventId);
+            }
+            lastSent.keySet().retainAll(hub.topics());
+        }
+    }
+
+    private void publish(int eventId) {
+        if (!hub.hasSubscribers(eventId)) {
+            return;
+        }
+        try {
+            Event event = eventService.getEventById(eventId);
+            String payload = event == null ? "deleted" : event.getAvailableTickets() + "/" + event.getStatus();
+            if (payload.equals(lastSent.put(eventId, payload))) {
+                return;
+            }
+            hub.publish(eventId, event == null ? deletedFrame(eventId) : frame(event, false));
+        } catch (SQLException | IOException e) {
+            // Try again next tick
+            dirty.add(eventId);
+            System.err.println("[SSE] Reading event " + eventId + " failed: " + e.getMessage());
+        }
+    }
+
+    private byte[] frame(Event event, boolean first) throws IOException {
+        JsonWriter data = JsonWriter.local().beginObject()
+            .name("eventId").value(event.getEventId())
+            .name("availableTickets").value(event.getAvailableTickets())
+            .name("status").value(event.getStatus())
+            .endObject();
+        return frame("availability", data, first);
+    }
+
+    private byte[] deletedFrame(int eventId) throws IOException {
+        return frame("deleted", JsonWriter.local().beginObject().name("eventId").value(eventId).endObject(), false);
+    }
+
+    private byte[] frame(String type, JsonWriter data, boolean first) throws IOException {
+        StringBuilder header = new StringBuilder(64);
+        if (first) {
+            header.append("retry: 3000\n");
+        }
+        header.append("id: ").append(sequence.incrementAndGet()).append('\n')
+              .append("event: ").append(type).append('\n')
+              .append("data: ");
+        // The JSON has no raw newlines, so it fits on one data line
+        ByteArrayOutputStream frame = new ByteArrayOutputStream(header.length() + data.size() + 2);
+        frame.write(header.toString().getBytes(StandardCharsets.US_ASCII));
+        data.writeTo(frame);
+        frame.write('\n');
+        frame.write('\n');
+        return frame.toByteArray();
+    }
+}
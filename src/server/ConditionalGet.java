@@ -0,0 +1,175 @@
+package server;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import metrics.Metrics;
+import models.Event;
+import models.User;
+import services.BookingStrategies;
+
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Conditional GET for the event and user resources.
+ *
+ * A resource's strong ETag is its id and updated_at (millisecond precision);
+ * for events also the ticket count, because bookings on MEMORY and BUCKETED
+ * events do not touch the events row. A list page gets a weak ETag hashed
+ * from the same fields of each of its rows. Handlers get these from a cheap
+ * version lookup (the event cache, a single-column query, the index-only
+ * page query of PageCondition) and call notModified() before the body is
+ * read or encoded.
+ *
+ * Last-Modified has one-second resolution, so it is only sent once updated_at
+ * is a second old: a later change then always lands in a later second, and
+ * If-Modified-Since can never hide it.
+ */
+public final class ConditionalGet {
+    private static final DateTimeFormatter HTTP_DATE =
+        DateTimeFormatter.ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US).withZone(ZoneOffset.UTC);
+
+    private static final String[] ENCODING_SUFFIXES = { "-gzip\"", "-deflate\"" };
+
+    private static final LongAdder NOT_MODIFIED = Metrics.counter("http_not_modified_total",
+            "GET requests answered with 304 Not Modified.", "");
+
+    private ConditionalGet() {
+    }
+
+    public static String etag(Event event) {
+        return "\"e" + event.getEventId() + "-" + Long.toString(millis(event.getUpdatedAt()), 36)
+             + "-" + event.getAvailableTickets() + "\"";
+    }
+
+    public static String etag(int userId, Timestamp updatedAt) {
+        return "\"u" + userId + "-" + Long.toString(millis(updatedAt), 36) + "\"";
+    }
+
+    // versions as given to a PageCondition, i.e. including the row after the page
+    public static String eventsPageETag(List<Event> versions) {
+        long h = 0xcbf29ce484222325L;
+        for (Event event : versions) {
+            h = mix(h, event.getEventId());
+            h = mix(h, millis(event.getUpdatedAt()));
+            h = mix(h, event.getAvailableTickets());
+        }
+        return "W/\"e" + versions.size() + "-" + Long.toHexString(h) + "\"";
+    }
+
+    public static String usersPageETag(List<User> versions) {
+        long h = 0xcbf29ce484222325L;
+        for (User user : versions) {
+            h = mix(h, user.getUserId());
+            h = mix(h, millis(user.getUpdatedAt()));
+        }
+        return "W/\"u" + versions.size() + "-" + Long.toHexString(h) + "\"";
+    }
+
+    // updated_at only dates the whole event while every booking rewrites the row
+    public static Timestamp lastModified(Event event) {
+        String strategy = event.getBookingStrategy();
+        if (BookingStrategies.MEMORY.equals(strategy) || BookingStrategies.BUCKETED.equals(strategy)) {
+            return null;
+        }
+        return event.getUpdatedAt();
+    }
+
+    // Whether a version lookup could save anything
+    public static boolean isConditional(HttpExchange exchange) {
+        Headers request = exchange.getRequestHeaders();
+        return request.containsKey("If-None-Match") || request.containsKey("If-Modified-Since");
+    }
+
+    // Sets ETag, and Last-Modified when lastModified (may be null) can serve as one
+    public static void setValidators(HttpExchange exchange, String etag, Timestamp lastModified) {
+        Headers headers = exchange.getResponseHeaders();
+        headers.set("ETag", etag);
+        headers.set("Cache-Control", "no-cache");
+        if (usable(lastModified)) {
+            headers.set("Last-Modified", HTTP_DATE.format(Instant.ofEpochMilli(lastModified.getTime())));
+        }
+    }
+
+    /**
+     * Sets the validators and, if If-None-Match (or, without it,
+     * If-Modified-Since) shows the client already has this version, answers
+     * 304 and returns true. Otherwise the caller sends the body as usual.
+     */
+    public static boolean notModified(HttpExchange exchange, String etag, Timestamp lastModified) throws IOException {
+        setValidators(exchange, etag, lastModified);
+        Headers request = exchange.getRequestHeaders();
+        String ifNoneMatch = request.getFirst("If-None-Match");
+        boolean fresh = ifNoneMatch != null
+            ? matches(ifNoneMatch, etag)
+            : usable(lastModified) && notModifiedSince(request.getFirst("If-Modified-Since"), lastModified);
+        if (!fresh) {
+            return false;
+        }
+        exchange.getResponseHeaders().remove("Content-Type");
+        exchange.sendResponseHeaders(304, -1);
+        exchange.close();
+        NOT_MODIFIED.increment();
+        return true;
+    }
+
+    // Weak comparison, as RFC 9110 asks of If-None-Match. A tag the client
+    // got on a compressed response carries the encoding (see
+    // ResponseCompression); the data it names is the same.
+    private static boolean matches(String ifNoneMatch, String etag) {
+        String opaque = opaque(etag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.equals("*") || opaque(candidate).equals(opaque)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean notModifiedSince(String ifModifiedSince, Timestamp lastModified) {
+        if (ifModifiedSince == null) {
+            return false;
+        }
+        try {
+            long since = ZonedDateTime.parse(ifModifiedSince.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toEpochSecond();
+            return lastModified.getTime() / 1000 <= since;
+        } catch (DateTimeParseException e) {
+            // An invalid date is ignored
+            return false;
+        }
+    }
+
+    private static boolean usable(Timestamp lastModified) {
+        return lastModified != null && System.currentTimeMillis() - lastModified.getTime() >= 1000;
+    }
+
+    private static String opaque(String etag) {
+        if (etag.startsWith("W/")) {
+            etag = etag.substring(2);
+        }
+        for (String suffix : ENCODING_SUFFIXES) {
+            if (etag.endsWith(suffix)) {
+                return etag.substring(0, etag.length() - suffix.length()) + "\"";
+            }
+        }
+        return etag;
+    }
+
+    private static long millis(Timestamp timestamp) {
+        return timestamp != null ? timestamp.getTime() : 0;
+    }
+
+    private static long mix(long h, long value) {
+        h = (h ^ value) * 0x100000001b3L;
+        return h ^ (h >>> 29);
+    }
+}
@@ -1,5 +1,146 @@
 package server;
 
-public class HttpServer {
-    
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import json.JsonException;
+import json.JsonWriter;
+import json.ModelJson;
+import metrics.RouteMetrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.Executor;
+
+/**
+ * The API server: wraps the JDK HttpServer and routes every exchange through
+ * one precompiled {@link RouteTable}. Controllers register their routes with
+ * get/post/put/delete; CORS, 404/405 and error responses are handled here once.
+ */
+public class HttpServer implements HttpHandler {
+
+    @FunctionalInterface
+    public interface RouteHandler {
+        void handle(HttpExchange exchange, PathParams params) throws Exception;
+    }
+
+    private static final ThreadLocal<PathParams> PARAMS = ThreadLocal.withInitial(PathParams::new);
+    // OPTIONS, 404 and 405 share one series so unknown paths cannot grow the label set
+    private static final RouteMetrics UNMATCHED = new RouteMetrics("*", "unmatched");
+
+    private final com.sun.net.httpserver.HttpServer server;
+    private final RouteTable routes = new RouteTable();
+
+    public HttpServer(int port, int backlog, Executor executor) throws IOException {
+        this.server = com.sun.net.httpserver.HttpServer.create(new InetSocketAddress(port), backlog);
+        this.server.createContext("/", this);
+        this.server.setExecutor(executor);
+    }
+
+    public void get(String pattern, RouteHandler handler) {
+        routes.add("GET", pattern, handler);
+    }
+
+    public void post(String pattern, RouteHandler handler) {
+        routes.add("POST", pattern, handler);
+    }
+
+    public void put(String pattern, RouteHandler handler) {
+        routes.add("PUT", pattern, handler);
+    }
+
+    public void delete(String pattern, RouteHandler handler) {
+        routes.add("DELETE", pattern, handler);
+    }
+
+    // Pattern of the route that would handle the request, or null
+    public String match(String method, String path) {
+        RouteTable.Node node = routes.match(path, PARAMS.get());
+        int methodIndex = RouteTable.methodIndex(method);
+        if (node == null || methodIndex < 0 || node.routes[methodIndex] == null) {
+            return null;
+        }
+        return node.routes[methodIndex].pattern;
+    }
+
+    // Bound port, useful when created with port 0
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    // Stops accepting new exchanges and waits up to delaySeconds for the running ones
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        RouteMetrics metrics = UNMATCHED;
+        try {
+            // Enable CORS
+            exchange.getResponseHeaders().add("Access-Control-Allow-Origin", "*");
+            exchange.getResponseHeaders().add("Access-Control-Allow-Methods", "GET, POST, PUT, DELETE, OPTIONS");
+            exchange.getResponseHeaders().add("Access-Control-Allow-Headers", "Content-Type, Idempotency-Key, Queue-Token, If-None-Match");
+            exchange.getResponseHeaders().add("Access-Control-Expose-Headers", "ETag");
+
+            String method = exchange.getRequestMethod();
+            if (method.equalsIgnoreCase("OPTIONS")) {
+                exchange.sendResponseHeaders(204, -1);
+                exchange.close();
+                return;
+            }
+
+            PathParams params = PARAMS.get();
+            RouteTable.Node node = routes.match(exchange.getRequestURI().getPath(), params);
+            if (node == null) {
+                sendError(exchange, 404, "Not found");
+                return;
+            }
+            int methodIndex = RouteTable.methodIndex(method);
+            RouteTable.Route route = methodIndex < 0 ? null : node.routes[methodIndex];
+            if (route == null) {
+                exchange.getResponseHeaders().set("Allow", allowed(node));
+                sendError(exchange, 405, "Method not allowed");
+                return;
+            }
+
+            metrics = route.metrics;
+            params.bind(route.paramNames);
+            HttpExchange target = ResponseCompression.wrap(exchange);
+            try {
+                route.handler.handle(target, params);
+            } catch (JsonException e) {
+                sendError(target, e.getStatus(), e.getMessage());
+            } catch (Exception e) {
+                e.printStackTrace();
+                sendError(target, 500, e.getMessage());
+            }
+        } finally {
+            metrics.record(exchange.getResponseCode(), System.nanoTime() - start);
+        }
+    }
+
+    private static String allowed(RouteTable.Node node) {
+        StringBuilder allow = new StringBuilder("OPTIONS");
+        for (int i = 0; i < RouteTable.METHODS.length; i++) {
+            if (node.routes[i] != null) {
+                allow.append(", ").append(RouteTable.METHODS[i]);
+            }
+        }
+        return allow.toString();
+    }
+
+    private static void sendError(HttpExchange exchange, int statusCode, String message) throws IOException {
+        JsonWriter response = ModelJson.error(message);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+        exchange.sendResponseHeaders(statusCode, response.size());
+        OutputStream os = exchange.getResponseBody();
+        response.writeTo(os);
+        os.close();
+    }
 }
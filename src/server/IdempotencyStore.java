@@ -0,0 +1,159 @@
+package server;
+
+import config.AppConfig;
+import json.JsonException;
+import metrics.Metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Responses of requests sent with an Idempotency-Key, bounded by
+ * IDEMPOTENCY_MAX_KEYS and IDEMPOTENCY_TTL_SEC.
+ *
+ * The first request for a key runs and publishes its response through a
+ * future; duplicates that arrive while it runs wait on that future, later
+ * ones get the stored response. Either way a retry never reaches the
+ * database. A key reused for a different request is rejected with 422. A
+ * failed attempt (exception or 5xx) is handed to the waiting duplicates
+ * and then forgotten, so a later retry runs again.
+ */
+public class IdempotencyStore {
+
+    public static final class Response {
+        private final int status;
+        private final byte[] body;
+        private final boolean replayed;
+
+        public Response(int status, byte[] body) {
+            this(status, body, false);
+        }
+
+        private Response(int status, byte[] body, boolean replayed) {
+            this.status = status;
+            this.body = body;
+            this.replayed = replayed;
+        }
+
+        public int getStatus() { return status; }
+        public byte[] getBody() { return body; }
+        public boolean isReplayed() { return replayed; }
+    }
+
+    @FunctionalInterface
+    public interface Action {
+        Response run() throws Exception;
+    }
+
+    private final int maxKeys;
+    private final long ttlNanos;
+    private final long waitMs;
+    private final Map<String, Entry> entries;
+
+    private final LongAdder executed = Metrics.counter("idempotency_requests_total",
+            "Requests with an Idempotency-Key by outcome.", "outcome=\"executed\"");
+    private final LongAdder replayed = Metrics.counter("idempotency_requests_total",
+            "Requests with an Idempotency-Key by outcome.", "outcome=\"replayed\"");
+    private final LongAdder conflicts = Metrics.counter("idempotency_requests_total",
+            "Requests with an Idempotency-Key by outcome.", "outcome=\"conflict\"");
+
+    public IdempotencyStore() {
+        this.maxKeys = AppConfig.getInt("IDEMPOTENCY_MAX_KEYS", 100000);
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(AppConfig.getLong("IDEMPOTENCY_TTL_SEC", 3600));
+        this.waitMs = AppConfig.getLong("IDEMPOTENCY_WAIT_MS", 30000);
+        // Insertion order: the eldest entry is also the first to expire
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxKeys || System.nanoTime() - eldest.getValue().createdAt > ttlNanos;
+            }
+        };
+        Metrics.gauge("idempotency_keys", "Idempotency keys currently stored.", "", this::size);
+    }
+
+    /**
+     * Runs action once per key. fingerprint identifies the request the key was
+     * first used with; a different fingerprint under the same key is a 422.
+     */
+    public Response execute(String key, String fingerprint, Action action) throws Exception {
+        Entry mine = new Entry(fingerprint, System.nanoTime());
+        Entry existing;
+        synchronized (entries) {
+            existing = entries.get(key);
+            if (existing != null && mine.createdAt - existing.createdAt > ttlNanos) {
+                entries.remove(key);
+                existing = null;
+            }
+            if (existing == null) {
+                entries.put(key, mine);
+            }
+        }
+
+        if (existing != null) {
+            return replay(existing, fingerprint);
+        }
+
+        executed.increment();
+        try {
+            Response response = action.run();
+            mine.result.complete(response);
+            if (response.getStatus() >= 500) {
+                forget(key, mine);
+            }
+            return response;
+        } catch (Exception e) {
+            mine.result.completeExceptionally(e);
+            forget(key, mine);
+            throw e;
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private Response replay(Entry existing, String fingerprint) throws Exception {
+        if (!existing.fingerprint.equals(fingerprint)) {
+            conflicts.increment();
+            throw new JsonException(422, "Idempotency-Key was already used for a different request");
+        }
+        replayed.increment();
+        try {
+            Response original = existing.result.get(waitMs, TimeUnit.MILLISECONDS);
+            return new Response(original.status, original.body, true);
+        } catch (TimeoutException e) {
+            throw new JsonException(409, "A request with this Idempotency-Key is still in progress");
+        } catch (ExecutionException e) {
+            // The first attempt failed; the duplicate reports the same failure
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw e;
+        }
+    }
+
+    private void forget(String key, Entry entry) {
+        synchronized (entries) {
+            entries.remove(key, entry);
+        }
+    }
+
+    private static final class Entry {
+        final String fingerprint;
+        final long createdAt;
+        final CompletableFuture<Response> result = new CompletableFuture<>();
+
+        Entry(String fingerprint, long createdAt) {
+            this.fingerprint = fingerprint;
+            this.createdAt = createdAt;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package server;
+
+import com.sun.net.httpserver.HttpExchange;
+import json.JsonWriter;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes one page of a collection as {"data":[...],"nextCursor":...} with
+ * chunked transfer encoding, one element at a time. Headers are only sent
+ * with the first element (or on finish), so an error before any row was
+ * produced can still become a 500. A source that checks revalidate() first
+ * can answer 304 instead, before reading the page.
+ */
+public class JsonPageStream {
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    public interface Source {
+        // Writes the page elements and returns the next cursor (or null)
+        String writeTo(JsonPageStream out) throws Exception;
+    }
+
+    public static void send(HttpExchange exchange, Source source) throws Exception {
+        JsonPageStream out = new JsonPageStream(exchange);
+        try {
+            out.finish(source.writeTo(out));
+        } catch (Exception e) {
+            if (!out.isStarted()) {
+                throw e;
+            }
+            e.printStackTrace();
+            out.abort();
+        }
+    }
+
+    private final HttpExchange exchange;
+    private OutputStream out;
+    private boolean first = true;
+    private boolean notModified;
+
+    public JsonPageStream(HttpExchange exchange) {
+        this.exchange = exchange;
+    }
+
+    public void write(String elementJson) throws IOException {
+        write(elementJson.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public void write(byte[] elementJson) throws IOException {
+        start();
+        if (!first) {
+            out.write(',');
+        }
+        first = false;
+        out.write(elementJson);
+    }
+
+    // Copies the encoded element straight from the writer's buffer
+    public void write(JsonWriter element) throws IOException {
+        start();
+        if (!first) {
+            out.write(',');
+        }
+        first = false;
+        element.writeTo(out);
+    }
+
+    // Sets the page's ETag; returns false, having sent 304, if the client already has the page
+    public boolean revalidate(String etag) throws IOException {
+        if (ConditionalGet.notModified(exchange, etag, null)) {
+            notModified = true;
+            return false;
+        }
+        return true;
+    }
+
+    // nextCursor is null on the last page
+    public void finish(String nextCursor) throws IOException {
+        if (notModified) {
+            return;
+        }
+        start();
+        out.write(']');
+        out.write(",\"nextCursor\":".getBytes(StandardCharsets.US_ASCII));
+        if (nextCursor == null) {
+            out.write("null".getBytes(StandardCharsets.US_ASCII));
+        } else {
+            out.write('"');
+            out.write(nextCursor.getBytes(StandardCharsets.US_ASCII));
+            out.write('"');
+        }
+        out.write('}');
+        out.close();
+    }
+
+    public boolean isStarted() {
+        return out != null || notModified;
+    }
+
+    // Used when the query fails after the 200 was already sent. The document
+    // is left unterminated, so clients fail to parse it instead of seeing a short page.
+    public void abort() {
+        exchange.close();
+    }
+
+    private void start() throws IOException {
+        if (out != null) {
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+        exchange.sendResponseHeaders(200, 0);
+        out = new BufferedOutputStream(exchange.getResponseBody(), BUFFER_SIZE);
+        out.write("{\"data\":[".getBytes(StandardCharsets.US_ASCII));
+    }
+}
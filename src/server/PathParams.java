@@ -0,0 +1,32 @@
+package server;
+
+/**
+ * Path parameters of the matched route. Every {name} segment is a
+ * non-negative int, parsed in place while matching.
+ *
+ * Instances are reused per thread by {@link HttpServer}; read the values in
+ * the handler, do not keep the object.
+ */
+public final class PathParams {
+    static final int MAX_PARAMS = 8;
+
+    private final int[] values = new int[MAX_PARAMS];
+    private String[] names = new String[0];
+
+    public int getInt(String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) {
+                return values[i];
+            }
+        }
+        throw new IllegalArgumentException("No path parameter: " + name);
+    }
+
+    void set(int index, int value) {
+        values[index] = value;
+    }
+
+    void bind(String[] names) {
+        this.names = names;
+    }
+}
@@ -0,0 +1,96 @@
+package server;
+
+import config.AppConfig;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Builds the executor the JDK HttpServer dispatches exchanges to.
+ *
+ * SERVER_EXECUTOR in .env selects the mode:
+ *   virtual    - one virtual thread per request (JDK 21+, falls back to pool)
+ *   pool       - bounded platform thread pool with a bounded queue
+ *   dispatcher - run everything on the HttpServer dispatcher thread (old behavior)
+ */
+public class RequestExecutors {
+
+    public static ExecutorService create() {
+        String mode = AppConfig.get("SERVER_EXECUTOR", "pool").toLowerCase();
+
+        switch (mode) {
+            case "dispatcher":
+                return null;
+            case "virtual":
+                ExecutorService virtual = newVirtualThreadExecutor();
+                if (virtual != null) {
+                    return virtual;
+                }
+                System.err.println("[WARN] Virtual threads need JDK 21+, falling back to bounded pool");
+                return newBoundedPool();
+            case "pool":
+                return newBoundedPool();
+            default:
+                throw new IllegalArgumentException("Unknown SERVER_EXECUTOR: " + mode +
+                        " (expected virtual, pool or dispatcher)");
+        }
+    }
+
+    public static String describe(ExecutorService executor) {
+        if (executor == null) {
+            return "dispatcher thread";
+        }
+        if (executor instanceof ThreadPoolExecutor) {
+            ThreadPoolExecutor pool = (ThreadPoolExecutor) executor;
+            return "bounded pool (threads=" + pool.getMaximumPoolSize() +
+                   ", queue=" + pool.getQueue().remainingCapacity() + ")";
+        }
+        return "virtual thread per request";
+    }
+
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static ExecutorService newBoundedPool() {
+        int threads = AppConfig.getInt("SERVER_POOL_THREADS", Runtime.getRuntime().availableProcessors() * 4);
+        int queue = AppConfig.getInt("SERVER_POOL_QUEUE", 1000);
+
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(
+            threads, threads, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(queue),
+            new NamedThreadFactory("http-worker"),
+            // When the queue is full the dispatcher runs the exchange itself,
+            // which stops it from accepting new connections until it catches up
+            new ThreadPoolExecutor.CallerRunsPolicy()
+        );
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    private static class NamedThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger counter = new AtomicInteger();
+
+        NamedThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, prefix + "-" + counter.incrementAndGet());
+            t.setDaemon(false);
+            return t;
+        }
+    }
+}
@@ -0,0 +1,338 @@
+package server;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpPrincipal;
+import config.AppConfig;
+import metrics.LatencyHistogram;
+import metrics.Metrics;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Negotiated gzip/deflate for response bodies. wrap() leaves the exchange as
+ * it is unless Accept-Encoding allows one of them; otherwise the choice is
+ * made when the handler calls sendResponseHeaders. JSON and text bodies of at
+ * least COMPRESSION_MIN_BYTES, or of unknown length (streamed pages), are then
+ * sent chunked with Content-Encoding and deflated as the handler writes them,
+ * so nothing is buffered beyond the deflater's window. Handlers do not change:
+ * they pass the plain length and write the plain bytes.
+ *
+ * Event streams are never compressed: the deflater holds output back until it
+ * has enough input, which would delay frames. Neither are 304s and other
+ * responses without a body. COMPRESSION_LEVEL=0 turns compression off.
+ */
+public final class ResponseCompression {
+    private static final int LEVEL = AppConfig.getInt("COMPRESSION_LEVEL", 4);
+    private static final int MIN_BYTES = AppConfig.getInt("COMPRESSION_MIN_BYTES", 1024);
+
+    // Magic, CM=deflate, no flags, no mtime, no XFL, OS=unknown
+    private static final byte[] GZIP_HEADER = { 0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, (byte) 0xff };
+
+    private static final String RESPONSES_HELP = "Responses sent compressed, by Content-Encoding.";
+    private static final LongAdder GZIP = Metrics.counter("http_compressed_responses_total", RESPONSES_HELP, "encoding=\"gzip\"");
+    private static final LongAdder DEFLATE = Metrics.counter("http_compressed_responses_total", RESPONSES_HELP, "encoding=\"deflate\"");
+    private static final String BYTES_HELP = "Body bytes of compressed responses before and after compression.";
+    private static final LongAdder BYTES_IN = Metrics.counter("http_compression_bytes_total", BYTES_HELP, "stage=\"uncompressed\"");
+    private static final LongAdder BYTES_OUT = Metrics.counter("http_compression_bytes_total", BYTES_HELP, "stage=\"compressed\"");
+    private static final LatencyHistogram TIME = Metrics.histogram("http_compression_seconds",
+            "Time spent in the deflater per compressed response (socket writes excluded).", "");
+
+    private ResponseCompression() {
+    }
+
+    public static HttpExchange wrap(HttpExchange exchange) {
+        if (LEVEL == 0 || exchange.getRequestMethod().equalsIgnoreCase("HEAD")) {
+            return exchange;
+        }
+        String encoding = negotiate(exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+        return encoding == null ? exchange : new CompressingExchange(exchange, encoding);
+    }
+
+    // "gzip", "deflate" or null, by q-value; gzip wins a tie
+    static String negotiate(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return null;
+        }
+        double gzip = -1;
+        double deflate = -1;
+        double any = -1;
+        for (String part : acceptEncoding.split(",")) {
+            int semicolon = part.indexOf(';');
+            String coding = (semicolon < 0 ? part : part.substring(0, semicolon)).trim();
+            double q = 1;
+            if (semicolon >= 0) {
+                String param = part.substring(semicolon + 1).trim();
+                if (param.startsWith("q=") || param.startsWith("Q=")) {
+                    try {
+                        q = Double.parseDouble(param.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        q = 0;
+                    }
+                }
+            }
+            if (coding.equalsIgnoreCase("gzip") || coding.equalsIgnoreCase("x-gzip")) {
+                gzip = q;
+            } else if (coding.equalsIgnoreCase("deflate")) {
+                deflate = q;
+            } else if (coding.equals("*")) {
+                any = q;
+            }
+        }
+        if (gzip < 0) {
+            gzip = Math.max(any, 0);
+        }
+        if (deflate < 0) {
+            deflate = Math.max(any, 0);
+        }
+        if (gzip > 0 && gzip >= deflate) {
+            return "gzip";
+        }
+        return deflate > 0 ? "deflate" : null;
+    }
+
+    private static boolean compressibleType(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        String type = contentType.toLowerCase();
+        return type.startsWith("application/json") || (type.startsWith("text/") && !type.startsWith("text/event-stream"));
+    }
+
+    private static final class CompressingExchange extends HttpExchange {
+        private final HttpExchange exchange;
+        private final String encoding;
+        private DeflatingStream body;
+
+        CompressingExchange(HttpExchange exchange, String encoding) {
+            this.exchange = exchange;
+            this.encoding = encoding;
+        }
+
+        @Override
+        public void sendResponseHeaders(int rCode, long responseLength) throws IOException {
+            Headers headers = exchange.getResponseHeaders();
+            // -1: no body; 0: chunked, length unknown
+            if (rCode < 200 || rCode == 204 || rCode == 304 || responseLength < 0
+                    || !compressibleType(headers.getFirst("Content-Type"))
+                    || headers.containsKey("Content-Encoding")) {
+                exchange.sendResponseHeaders(rCode, responseLength);
+                return;
+            }
+            headers.add("Vary", "Accept-Encoding");
+            if (responseLength > 0 && responseLength < MIN_BYTES) {
+                exchange.sendResponseHeaders(rCode, responseLength);
+                return;
+            }
+
+            headers.set("Content-Encoding", encoding);
+            // A strong ETag names one byte sequence, so the encoding becomes part of it
+            String etag = headers.getFirst("ETag");
+            if (etag != null && etag.endsWith("\"")) {
+                headers.set("ETag", etag.substring(0, etag.length() - 1) + "-" + encoding + "\"");
+            }
+            exchange.sendResponseHeaders(rCode, 0);
+            boolean gzip = encoding.equals("gzip");
+            (gzip ? GZIP : DEFLATE).increment();
+            body = new DeflatingStream(exchange.getResponseBody(), gzip);
+        }
+
+        @Override
+        public OutputStream getResponseBody() {
+            return body != null ? body : exchange.getResponseBody();
+        }
+
+        // Closing the exchange without closing the body first is how handlers
+        // abort a response; the body then ends without a valid trailer
+        @Override
+        public void close() {
+            if (body != null) {
+                body.abort();
+            }
+            exchange.close();
+        }
+
+        @Override
+        public Headers getRequestHeaders() {
+            return exchange.getRequestHeaders();
+        }
+
+        @Override
+        public Headers getResponseHeaders() {
+            return exchange.getResponseHeaders();
+        }
+
+        @Override
+        public URI getRequestURI() {
+            return exchange.getRequestURI();
+        }
+
+        @Override
+        public String getRequestMethod() {
+            return exchange.getRequestMethod();
+        }
+
+        @Override
+        public HttpContext getHttpContext() {
+            return exchange.getHttpContext();
+        }
+
+        @Override
+        public InputStream getRequestBody() {
+            return exchange.getRequestBody();
+        }
+
+        @Override
+        public InetSocketAddress getRemoteAddress() {
+            return exchange.getRemoteAddress();
+        }
+
+        @Override
+        public int getResponseCode() {
+            return exchange.getResponseCode();
+        }
+
+        @Override
+        public InetSocketAddress getLocalAddress() {
+            return exchange.getLocalAddress();
+        }
+
+        @Override
+        public String getProtocol() {
+            return exchange.getProtocol();
+        }
+
+        @Override
+        public Object getAttribute(String name) {
+            return exchange.getAttribute(name);
+        }
+
+        @Override
+        public void setAttribute(String name, Object value) {
+            exchange.setAttribute(name, value);
+        }
+
+        @Override
+        public void setStreams(InputStream i, OutputStream o) {
+            exchange.setStreams(i, o);
+        }
+
+        @Override
+        public HttpPrincipal getPrincipal() {
+            return exchange.getPrincipal();
+        }
+    }
+
+    // Deflates straight into the exchange's chunked stream. gzip is raw
+    // deflate framed by GZIP_HEADER and a CRC32/length trailer; HTTP's
+    // "deflate" is the zlib format, which the Deflater writes itself.
+    private static final class DeflatingStream extends OutputStream {
+        private final OutputStream out;
+        private final Deflater deflater;
+        private final CRC32 crc;
+        private final byte[] buffer = new byte[8192];
+        private long written;
+        private long deflateNanos;
+        private boolean closed;
+
+        DeflatingStream(OutputStream out, boolean gzip) throws IOException {
+            this.out = out;
+            this.deflater = new Deflater(LEVEL, gzip);
+            this.crc = gzip ? new CRC32() : null;
+            if (gzip) {
+                out.write(GZIP_HEADER);
+                written += GZIP_HEADER.length;
+            }
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (closed) {
+                throw new IOException("Response body already closed");
+            }
+            if (len == 0) {
+                return;
+            }
+            long start = System.nanoTime();
+            deflater.setInput(b, off, len);
+            if (crc != null) {
+                crc.update(b, off, len);
+            }
+            deflateNanos += System.nanoTime() - start;
+            while (!deflater.needsInput()) {
+                deflate();
+            }
+        }
+
+        // Deliberately not a deflater flush: that would cost ratio on every
+        // buffered write, and nothing compressed here is latency-sensitive
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    deflate();
+                }
+                if (crc != null) {
+                    byte[] trailer = new byte[8];
+                    writeIntLE(trailer, 0, crc.getValue());
+                    writeIntLE(trailer, 4, deflater.getBytesRead());
+                    out.write(trailer);
+                    written += trailer.length;
+                }
+                out.close();
+                BYTES_IN.add(deflater.getBytesRead());
+                BYTES_OUT.add(written);
+                TIME.recordNanos(deflateNanos);
+            } finally {
+                deflater.end();
+            }
+        }
+
+        void abort() {
+            if (!closed) {
+                closed = true;
+                deflater.end();
+            }
+        }
+
+        private void deflate() throws IOException {
+            long start = System.nanoTime();
+            int n = deflater.deflate(buffer, 0, buffer.length, Deflater.NO_FLUSH);
+            deflateNanos += System.nanoTime() - start;
+            if (n > 0) {
+                out.write(buffer, 0, n);
+                written += n;
+            }
+        }
+
+        private static void writeIntLE(byte[] b, int off, long value) {
+            b[off] = (byte) value;
+            b[off + 1] = (byte) (value >> 8);
+            b[off + 2] = (byte) (value >> 16);
+            b[off + 3] = (byte) (value >> 24);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package server;
+
+import metrics.RouteMetrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Segment trie of route patterns such as /api/bookings/{id}/confirm.
+ *
+ * Patterns are compiled once at registration. Matching walks the request
+ * path by index (no split, no regex, no substrings): literal children are
+ * compared in place with regionMatches and {param} segments are parsed as
+ * ints straight into a {@link PathParams}.
+ */
+final class RouteTable {
+    static final String[] METHODS = { "GET", "POST", "PUT", "DELETE" };
+
+    static final class Route {
+        final String method;
+        final String pattern;
+        final String[] paramNames;
+        final HttpServer.RouteHandler handler;
+        final RouteMetrics metrics;
+
+        Route(String method, String pattern, String[] paramNames, HttpServer.RouteHandler handler) {
+            this.method = method;
+            this.pattern = pattern;
+            this.paramNames = paramNames;
+            this.handler = handler;
+            this.metrics = new RouteMetrics(method, pattern);
+        }
+    }
+
+    static final class Node {
+        String[] literals = new String[0];
+        Node[] literalChildren = new Node[0];
+        Node paramChild;
+        // Indexed like METHODS; a node with no routes is only an inner segment
+        final Route[] routes = new Route[METHODS.length];
+
+        boolean isEndpoint() {
+            for (Route route : routes) {
+                if (route != null) return true;
+            }
+            return false;
+        }
+    }
+
+    private final Node root = new Node();
+
+    void add(String method, String pattern, HttpServer.RouteHandler handler) {
+        int methodIndex = methodIndex(method);
+        if (methodIndex < 0) {
+            throw new IllegalArgumentException("Unsupported method: " + method);
+        }
+        if (!pattern.startsWith("/")) {
+            throw new IllegalArgumentException("Route must start with '/': " + pattern);
+        }
+
+        Node node = root;
+        List<String> paramNames = new ArrayList<>();
+        for (String segment : pattern.substring(1).split("/", -1)) {
+            if (segment.startsWith("{") && segment.endsWith("}")) {
+                paramNames.add(segment.substring(1, segment.length() - 1));
+                if (paramNames.size() > PathParams.MAX_PARAMS) {
+                    throw new IllegalArgumentException("Too many parameters: " + pattern);
+                }
+                if (node.paramChild == null) {
+                    node.paramChild = new Node();
+                }
+                node = node.paramChild;
+            } else {
+                node = literalChild(node, segment);
+            }
+        }
+        if (node.routes[methodIndex] != null) {
+            throw new IllegalStateException("Duplicate route: " + method + " " + pattern);
+        }
+        node.routes[methodIndex] = new Route(method, pattern, paramNames.toArray(new String[0]), handler);
+    }
+
+    // Returns the endpoint node for the path (whatever the method), or null.
+    // Parameter values are written to params in pattern order.
+    Node match(String path, PathParams params) {
+        if (path.isEmpty() || path.charAt(0) != '/') {
+            return null;
+        }
+        return match(root, path, 1, 0, params);
+    }
+
+    private Node match(Node node, String path, int start, int paramIndex, PathParams params) {
+        int end = path.indexOf('/', start);
+        if (end < 0) {
+            end = path.length();
+        }
+        int length = end - start;
+        boolean last = end == path.length();
+
+        for (int i = 0; i < node.literals.length; i++) {
+            String literal = node.literals[i];
+            if (literal.length() == length && path.regionMatches(start, literal, 0, length)) {
+                Node found = last ? endpoint(node.literalChildren[i])
+                                  : match(node.literalChildren[i], path, end + 1, paramIndex, params);
+                if (found != null) {
+                    return found;
+                }
+            }
+        }
+
+        if (node.paramChild != null && paramIndex < PathParams.MAX_PARAMS) {
+            int value = parseInt(path, start, end);
+            if (value >= 0) {
+                params.set(paramIndex, value);
+                return last ? endpoint(node.paramChild)
+                            : match(node.paramChild, path, end + 1, paramIndex + 1, params);
+            }
+        }
+        return null;
+    }
+
+    static int methodIndex(String method) {
+        switch (method) {
+            case "GET":    return 0;
+            case "POST":   return 1;
+            case "PUT":    return 2;
+            case "DELETE": return 3;
+            default:       return -1;
+        }
+    }
+
+    private static Node endpoint(Node node) {
+        return node.isEndpoint() ? node : null;
+    }
+
+    // Digits only, like the old \d+ patterns; -1 if empty, not a number or too large
+    private static int parseInt(String s, int start, int end) {
+        if (start == end || end - start > 10) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value > Integer.MAX_VALUE ? -1 : (int) value;
+    }
+
+    private static Node literalChild(Node node, String segment) {
+        for (int i = 0; i < node.literals.length; i++) {
+            if (node.literals[i].equals(segment)) {
+                return node.literalChildren[i];
+            }
+        }
+        Node child = new Node();
+        int n = node.literals.length;
+        node.literals = Arrays.copyOf(node.literals, n + 1);
+        node.literalChildren = Arrays.copyOf(node.literalChildren, n + 1);
+        node.literals[n] = segment;
+        node.literalChildren[n] = child;
+        return child;
+    }
+}
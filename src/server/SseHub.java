@@ -0,0 +1,280 @@
+package server;
+
+import com.sun.net.httpserver.HttpExchange;
+import config.AppConfig;
+import metrics.Metrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Server-Sent Events fan-out keyed by an int topic.
+ *
+ * A subscriber is just its open HttpExchange: the handler sends the headers,
+ * registers the exchange and returns, so idle streams hold no thread. Frames
+ * are written by SSE_WRITER_THREADS shared writers. Each subscriber keeps only
+ * its latest unsent frame, so a slow reader gets the current state instead of
+ * a backlog, and at most one writer works on it at a time. A comment line
+ * every SSE_HEARTBEAT_SEC keeps proxies from timing the stream out and finds
+ * clients that went away.
+ *
+ * A write blocked for more than SSE_WRITE_TIMEOUT_MS (a client that stopped
+ * reading with its TCP window full) drops the subscriber and writes its writer
+ * off. Closing the exchange cannot unblock the write, since close() waits on
+ * the same stream, so instead the pool starts a replacement thread and the
+ * stuck one leaves the pool once TCP gives up on the connection. At most
+ * SSE_MAX_STUCK_WRITERS writers are replaced at a time.
+ */
+public final class SseHub {
+    private static final byte[] HEARTBEAT = ":\n\n".getBytes(StandardCharsets.US_ASCII);
+
+    // Subscriber.state
+    private static final int IDLE = 0;
+    private static final int WRITING = 1;
+    private static final int WRITTEN_OFF = 2;
+
+    private static final class Subscriber {
+        final int topic;
+        final HttpExchange exchange;
+        final OutputStream out;
+        final AtomicReference<byte[]> pending = new AtomicReference<>();
+        final AtomicInteger state = new AtomicInteger(IDLE);
+        volatile long writeStartedAt;
+        // Set by beat() before it writes the writer off
+        volatile boolean replaced;
+
+        Subscriber(int topic, HttpExchange exchange) {
+            this.topic = topic;
+            this.exchange = exchange;
+            this.out = exchange.getResponseBody();
+        }
+    }
+
+    private final Map<Integer, Set<Subscriber>> topics = new ConcurrentHashMap<>();
+    private final AtomicInteger count = new AtomicInteger();
+    private final int maxSubscribers;
+    private final long writeTimeoutNanos;
+    private final int writerThreads;
+    private final ThreadPoolExecutor writers;
+    private final ScheduledExecutorService heartbeat;
+    private int stuckWriters;
+
+    private final LongAdder frames = Metrics.counter("sse_frames_total", "SSE frames written, heartbeats included.", "");
+    private final LongAdder closed = Metrics.counter("sse_disconnects_total", "SSE subscribers dropped by reason.", "reason=\"closed\"");
+    private final LongAdder slow = Metrics.counter("sse_disconnects_total", "SSE subscribers dropped by reason.", "reason=\"slow\"");
+
+    public SseHub(String name) {
+        this.maxSubscribers = AppConfig.getInt("SSE_MAX_SUBSCRIBERS", 50000);
+        this.writeTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(AppConfig.getLong("SSE_WRITE_TIMEOUT_MS", 10000));
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.writerThreads = AppConfig.getInt("SSE_WRITER_THREADS", 4);
+        int maxStuck = AppConfig.getInt("SSE_MAX_STUCK_WRITERS", 64);
+        this.writers = new ThreadPoolExecutor(writerThreads, writerThreads + maxStuck, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+            Thread t = new Thread(r, name + "-writer-" + threadIndex.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, name + "-heartbeat");
+            t.setDaemon(true);
+            return t;
+        });
+        long heartbeatSec = AppConfig.getLong("SSE_HEARTBEAT_SEC", 15);
+        heartbeat.scheduleWithFixedDelay(this::beat, heartbeatSec, heartbeatSec, TimeUnit.SECONDS);
+        Metrics.gauge("sse_subscribers", "Open SSE streams.", "", count::get);
+        Metrics.gauge("sse_stuck_writers", "SSE writer threads blocked on a dropped subscriber.", "", this::stuckWriters);
+    }
+
+    /**
+     * Starts an event stream on exchange and queues first as its opening
+     * frame. Returns false, without touching the exchange, when the hub is
+     * full. The caller must not close the exchange afterwards.
+     */
+    public boolean subscribe(int topic, HttpExchange exchange, byte[] first) throws IOException {
+        if (count.incrementAndGet() > maxSubscribers) {
+            count.decrementAndGet();
+            return false;
+        }
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=UTF-8");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        // Keeps nginx from buffering the stream
+        exchange.getResponseHeaders().set("X-Accel-Buffering", "no");
+        try {
+            exchange.sendResponseHeaders(200, 0);
+        } catch (IOException e) {
+            count.decrementAndGet();
+            throw e;
+        }
+        Subscriber subscriber = new Subscriber(topic, exchange);
+        // Inside compute, so a concurrent remove() cannot drop the set we add to
+        topics.compute(topic, (t, subscribers) -> {
+            Set<Subscriber> set = subscribers != null ? subscribers : ConcurrentHashMap.newKeySet();
+            set.add(subscriber);
+            return set;
+        });
+        offer(subscriber, first);
+        return true;
+    }
+
+    public boolean hasSubscribers(int topic) {
+        return topics.containsKey(topic);
+    }
+
+    public Set<Integer> topics() {
+        return topics.keySet();
+    }
+
+    public int size() {
+        return count.get();
+    }
+
+    // Replaces whatever the topic's subscribers have not been sent yet with frame
+    public void publish(int topic, byte[] frame) {
+        Set<Subscriber> subscribers = topics.get(topic);
+        if (subscribers == null) {
+            return;
+        }
+        for (Subscriber subscriber : subscribers) {
+            offer(subscriber, frame);
+        }
+    }
+
+    public void shutdown() {
+        heartbeat.shutdownNow();
+        writers.shutdownNow();
+        for (Set<Subscriber> subscribers : topics.values()) {
+            for (Subscriber subscriber : subscribers) {
+                subscriber.exchange.close();
+            }
+        }
+        topics.clear();
+    }
+
+    private void offer(Subscriber subscriber, byte[] frame) {
+        subscriber.pending.set(frame);
+        schedule(subscriber);
+    }
+
+    private void schedule(Subscriber subscriber) {
+        if (subscriber.state.compareAndSet(IDLE, WRITING)) {
+            writers.execute(() -> drain(subscriber));
+        }
+    }
+
+    private void drain(Subscriber subscriber) {
+        boolean failed = false;
+        try {
+            byte[] frame;
+            while (subscriber.state.get() == WRITING && (frame = subscriber.pending.getAndSet(null)) != null) {
+                subscriber.writeStartedAt = System.nanoTime();
+                subscriber.out.write(frame);
+                subscriber.out.flush();
+                subscriber.writeStartedAt = 0;
+                frames.increment();
+            }
+        } catch (IOException e) {
+            failed = true;
+            if (remove(subscriber)) {
+                closed.increment();
+            }
+        }
+        if (!subscriber.state.compareAndSet(WRITING, IDLE)) {
+            // Written off by beat() while blocked; the pool started a replacement if it could
+            subscriber.exchange.close();
+            if (subscriber.replaced) {
+                writerReturned();
+            }
+            return;
+        }
+        if (failed) {
+            subscriber.exchange.close();
+            return;
+        }
+        // A frame offered after the loop emptied pending but before state was reset
+        if (subscriber.pending.get() != null) {
+            schedule(subscriber);
+        }
+    }
+
+    private void beat() {
+        long now = System.nanoTime();
+        for (Set<Subscriber> subscribers : topics.values()) {
+            for (Subscriber subscriber : subscribers) {
+                long started = subscriber.writeStartedAt;
+                if (started != 0 && now - started > writeTimeoutNanos) {
+                    if (remove(subscriber)) {
+                        slow.increment();
+                    }
+                    writeOff(subscriber);
+                } else if (subscriber.pending.compareAndSet(null, HEARTBEAT)) {
+                    schedule(subscriber);
+                }
+            }
+        }
+    }
+
+    private void writeOff(Subscriber subscriber) {
+        boolean replace = replaceWriter();
+        subscriber.replaced = replace;
+        while (!subscriber.state.compareAndSet(WRITING, WRITTEN_OFF)) {
+            if (subscriber.state.get() == WRITTEN_OFF) {
+                if (replace) {
+                    writerReturned();
+                }
+                return;
+            }
+            // The write finished in the meantime; nothing is stuck, only the stream is left to close
+            if (subscriber.state.compareAndSet(IDLE, WRITTEN_OFF)) {
+                if (replace) {
+                    writerReturned();
+                }
+                writers.execute(subscriber.exchange::close);
+                return;
+            }
+        }
+    }
+
+    private synchronized boolean replaceWriter() {
+        if (writerThreads + stuckWriters >= writers.getMaximumPoolSize()) {
+            return false;
+        }
+        stuckWriters++;
+        writers.setCorePoolSize(writerThreads + stuckWriters);
+        return true;
+    }
+
+    private synchronized void writerReturned() {
+        stuckWriters--;
+        // The extra thread ends when it next goes idle
+        writers.setCorePoolSize(writerThreads + stuckWriters);
+    }
+
+    private synchronized int stuckWriters() {
+        return stuckWriters;
+    }
+
+    private boolean remove(Subscriber subscriber) {
+        boolean[] removed = new boolean[1];
+        topics.computeIfPresent(subscriber.topic, (topic, subscribers) -> {
+            removed[0] = subscribers.remove(subscriber);
+            return subscribers.isEmpty() ? null : subscribers;
+        });
+        if (removed[0]) {
+            count.decrementAndGet();
+        }
+        return removed[0];
+    }
+}
@@ -0,0 +1,288 @@
+package server;
+
+import config.AppConfig;
+import json.JsonException;
+import json.JsonWriter;
+import metrics.Metrics;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Admission control for hot events. While an event has a waiting room,
+ * booking it takes a queue token: every client gets the next number in line,
+ * and an admission frontier moves through the numbers at admissionRate per
+ * second. Clients behind the frontier get a QueuedException (429 with
+ * Retry-After and their position) and retry with their token; clients past
+ * it book, but only maxConcurrency of them at a time, so the event's row
+ * lock never has more than that many transactions queued on it.
+ *
+ * Tokens are "eventId.number.mac", signed with a per-process key, so the
+ * queue costs one counter per event and one bit per issued number (to stop
+ * a token from booking twice). A token left more than WAITING_ROOM_ADMIT_TTL_SEC
+ * worth of admissions behind the frontier has lost its turn and is re-queued.
+ */
+public final class WaitingRoom {
+
+    /** The caller is not admitted yet; retry with getToken() after getRetryAfterSec(). */
+    public static final class QueuedException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        private final String token;
+        private final long position;
+        private final long retryAfterSec;
+
+        QueuedException(String token, long position, long retryAfterSec) {
+            super(position > 0 ? "Waiting room: number " + position + " in line"
+                               : "Waiting room: all booking slots are busy");
+            this.token = token;
+            this.position = position;
+            this.retryAfterSec = retryAfterSec;
+        }
+
+        public String getToken() { return token; }
+        public long getPosition() { return position; }
+        public long getRetryAfterSec() { return retryAfterSec; }
+    }
+
+    /** One admitted booking attempt; close() frees its slot. */
+    public final class Pass implements AutoCloseable {
+        private final int number;
+        private boolean booked;
+
+        private Pass(int number) {
+            this.number = number;
+        }
+
+        // The token is spent; without this close() lets it be used again
+        public void booked() {
+            booked = true;
+        }
+
+        @Override
+        public void close() {
+            slots.release();
+            if (!booked) {
+                synchronized (WaitingRoom.this) {
+                    used.clear(number);
+                }
+            }
+        }
+    }
+
+    private static final Map<Integer, WaitingRoom> ROOMS = new ConcurrentHashMap<>();
+    private static final long ADMIT_TTL_SEC = AppConfig.getLong("WAITING_ROOM_ADMIT_TTL_SEC", 60);
+    private static final long SLOT_WAIT_MS = AppConfig.getLong("WAITING_ROOM_SLOT_WAIT_MS", 1000);
+    private static final SecretKeySpec KEY;
+    static {
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        KEY = new SecretKeySpec(secret, "HmacSHA256");
+    }
+    private static final ThreadLocal<Mac> MAC = ThreadLocal.withInitial(() -> {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(KEY);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private static final String HELP = "Booking attempts on events with a waiting room by outcome.";
+    private static final LongAdder ADMITTED = Metrics.counter("waiting_room_requests_total", HELP, "outcome=\"admitted\"");
+    private static final LongAdder QUEUED = Metrics.counter("waiting_room_requests_total", HELP, "outcome=\"queued\"");
+    private static final LongAdder BUSY = Metrics.counter("waiting_room_requests_total", HELP, "outcome=\"busy\"");
+    static {
+        Metrics.gauge("waiting_room_waiting", "Queue tokens not yet admitted, over all waiting rooms.", "", () -> {
+            long waiting = 0;
+            for (WaitingRoom room : ROOMS.values()) {
+                waiting += room.waiting();
+            }
+            return waiting;
+        });
+        Metrics.gauge("waiting_room_active", "Admitted bookings in flight, over all waiting rooms.", "", () -> {
+            long active = 0;
+            for (WaitingRoom room : ROOMS.values()) {
+                active += room.active();
+            }
+            return active;
+        });
+    }
+
+    private final int eventId;
+    private final Slots slots;
+    // Guarded by this
+    private int admissionRate;
+    private int maxConcurrency;
+    private long issued;
+    private double frontier;
+    private long lastNanos = System.nanoTime();
+    private final BitSet used = new BitSet();
+
+    private WaitingRoom(int eventId, int admissionRate, int maxConcurrency) {
+        this.eventId = eventId;
+        this.admissionRate = admissionRate;
+        this.maxConcurrency = maxConcurrency;
+        this.slots = new Slots(maxConcurrency);
+        // The first maxConcurrency arrivals go straight in
+        this.frontier = maxConcurrency;
+    }
+
+    public static WaitingRoom get(int eventId) {
+        return ROOMS.get(eventId);
+    }
+
+    // Opens the event's waiting room, or changes the limits of an open one keeping its queue
+    public static WaitingRoom open(int eventId, int admissionRate, int maxConcurrency) {
+        if (admissionRate <= 0) {
+            throw new JsonException(400, "admissionRate must be greater than 0");
+        }
+        if (maxConcurrency <= 0) {
+            throw new JsonException(400, "maxConcurrency must be greater than 0");
+        }
+        WaitingRoom room = ROOMS.computeIfAbsent(eventId, id -> new WaitingRoom(id, admissionRate, maxConcurrency));
+        room.configure(admissionRate, maxConcurrency);
+        return room;
+    }
+
+    public static boolean close(int eventId) {
+        return ROOMS.remove(eventId) != null;
+    }
+
+    /**
+     * Admits the holder of token (null for a first attempt) or throws
+     * QueuedException with the token to come back with. Waits at most
+     * WAITING_ROOM_SLOT_WAIT_MS for a free booking slot.
+     */
+    public Pass admit(String token) throws QueuedException, InterruptedException {
+        int number;
+        synchronized (this) {
+            advance(System.nanoTime());
+            number = token == null ? -1 : verify(token);
+            if (number < 0) {
+                if (issued >= Integer.MAX_VALUE) {
+                    throw new JsonException(503, "Waiting room is full");
+                }
+                number = (int) issued++;
+            }
+            if (number >= frontier) {
+                QUEUED.increment();
+                long position = number - (long) frontier + 1;
+                throw new QueuedException(token(number), position, (position + admissionRate - 1) / admissionRate);
+            }
+            used.set(number);
+        }
+
+        if (!slots.tryAcquire(SLOT_WAIT_MS, TimeUnit.MILLISECONDS)) {
+            synchronized (this) {
+                used.clear(number);
+            }
+            BUSY.increment();
+            throw new QueuedException(token(number), 0, 1);
+        }
+        ADMITTED.increment();
+        return new Pass(number);
+    }
+
+    public synchronized JsonWriter describe(JsonWriter w) {
+        advance(System.nanoTime());
+        return w.beginObject()
+                .name("eventId").value(eventId)
+                .name("admissionRate").value(admissionRate)
+                .name("maxConcurrency").value(maxConcurrency)
+                .name("issued").value(issued)
+                .name("waiting").value(waiting())
+                .name("active").value(active())
+                .endObject();
+    }
+
+    private synchronized void configure(int admissionRate, int maxConcurrency) {
+        advance(System.nanoTime());
+        this.admissionRate = admissionRate;
+        if (maxConcurrency > this.maxConcurrency) {
+            slots.release(maxConcurrency - this.maxConcurrency);
+        } else {
+            slots.shrink(this.maxConcurrency - maxConcurrency);
+        }
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    // Moves the frontier for the time passed; when idle it runs at most maxConcurrency ahead of the line
+    private void advance(long now) {
+        frontier = Math.min(frontier + admissionRate * ((now - lastNanos) / 1e9), issued + maxConcurrency);
+        lastNanos = now;
+    }
+
+    // The token's number, or -1 if it has lost its turn and needs a new one
+    private int verify(String token) {
+        int dot1 = token.indexOf('.');
+        int dot2 = token.indexOf('.', dot1 + 1);
+        long number;
+        try {
+            if (dot1 < 0 || dot2 < 0 || Integer.parseInt(token.substring(0, dot1)) != eventId) {
+                throw new NumberFormatException();
+            }
+            number = Long.parseLong(token.substring(dot1 + 1, dot2));
+        } catch (NumberFormatException e) {
+            throw new JsonException(400, "Invalid Queue-Token for this event");
+        }
+        byte[] expected = token(eventId, number).getBytes(StandardCharsets.US_ASCII);
+        if (number < 0 || number >= issued
+                || !MessageDigest.isEqual(expected, token.getBytes(StandardCharsets.US_ASCII))) {
+            throw new JsonException(400, "Invalid Queue-Token for this event");
+        }
+        if (used.get((int) number)) {
+            throw new JsonException(409, "Queue-Token was already used");
+        }
+        if (frontier - number > (double) admissionRate * ADMIT_TTL_SEC + maxConcurrency) {
+            return -1;
+        }
+        return (int) number;
+    }
+
+    private String token(int number) {
+        return token(eventId, number);
+    }
+
+    private static String token(int eventId, long number) {
+        String payload = eventId + "." + number;
+        byte[] mac = MAC.get().doFinal(payload.getBytes(StandardCharsets.US_ASCII));
+        StringBuilder token = new StringBuilder(payload.length() + 17).append(payload).append('.');
+        for (int i = 0; i < 8; i++) {
+            token.append(Character.forDigit((mac[i] >> 4) & 0xF, 16)).append(Character.forDigit(mac[i] & 0xF, 16));
+        }
+        return token.toString();
+    }
+
+    private synchronized long waiting() {
+        advance(System.nanoTime());
+        return Math.max(0, issued - (long) frontier);
+    }
+
+    private synchronized int active() {
+        return maxConcurrency - slots.availablePermits();
+    }
+
+    private static final class Slots extends Semaphore {
+        private static final long serialVersionUID = 1L;
+
+        Slots(int permits) {
+            super(permits, true);
+        }
+
+        void shrink(int permits) {
+            reducePermits(permits);
+        }
+    }
+}
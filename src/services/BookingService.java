@@ -1,24 +1,30 @@
 package services;
 
+import config.AppConfig;
 import dao.BookingDAO;
-import dao.EventDAO;
+import dao.EventCache;
+import dao.PageRequest;
+import dao.RowCallback;
+import inventory.HoldExpiry;
+import inventory.InventoryEngine;
 import models.Booking;
 import models.Event;
 
+import java.io.IOException;
 import java.sql.SQLException;
 import java.util.List;
 
 public class BookingService {
+    private static final int MAX_BATCH_ITEMS = AppConfig.getInt("BOOKING_BATCH_MAX_ITEMS", 20);
+    
     private BookingDAO bookingDAO;
-    private EventDAO eventDAO;
     
     public BookingService() {
         this.bookingDAO = new BookingDAO();
-        this.eventDAO = new EventDAO();
     }
     
-    public List<Booking> getAllBookings() throws SQLException {
-        return bookingDAO.getAll();
+    public String streamAllBookings(PageRequest page, RowCallback<Booking> callback) throws SQLException, IOException {
+        return bookingDAO.streamAll(page, callback);
     }
     
     public Booking createBooking(int userId, int eventId, int quantity) throws Exception {
@@ -26,28 +32,72 @@ public class BookingService {
             throw new IllegalArgumentException("Quantity must be greater than 0");
         }
         
-        Event event = eventDAO.getById(eventId);
+        // Only picks the strategy and price; every strategy re-checks tickets and status under its own lock
+        Event event = EventCache.getInstance().get(eventId);
         if (event == null) {
             throw new IllegalArgumentException("Event not found");
         }
         
         try {
-            return bookingDAO.createBookingWithLock(userId, eventId, quantity);
+            Booking booking;
+            try {
+                booking = BookingStrategies.forEvent(event).book(userId, event, quantity);
+            } catch (InventoryEngine.StrategyChangedException e) {
+                // The cached copy predates a strategy switch; book once more through the new one
+                EventCache.getInstance().invalidate(eventId);
+                event = EventCache.getInstance().get(eventId);
+                if (event == null) {
+                    throw new IllegalArgumentException("Event not found");
+                }
+                booking = BookingStrategies.forEvent(event).book(userId, event, quantity);
+            }
+            // MEMORY bookings are not in the table yet; the write-behind reports them once persisted
+            if (!BookingStrategies.MEMORY.equals(event.getBookingStrategy())) {
+                EventCache.getInstance().ticketsChanged(eventId, -quantity);
+            }
+            // MEMORY bookings have no id yet; the write-behind tracks them once persisted
+            HoldExpiry.track(booking.getBookingId());
+            return booking;
         } catch (SQLException e) {
             throw new Exception("Failed to create booking: " + e.getMessage());
         }
     }
     
+    public List<Booking> createBatchBooking(int userId, int[] eventIds, int[] quantities) throws Exception {
+        if (eventIds.length == 0) {
+            throw new IllegalArgumentException("At least one item is required");
+        }
+        if (eventIds.length > MAX_BATCH_ITEMS) {
+            throw new IllegalArgumentException("At most " + MAX_BATCH_ITEMS + " items per batch");
+        }
+        for (int quantity : quantities) {
+            if (quantity <= 0) {
+                throw new IllegalArgumentException("Quantity must be greater than 0");
+            }
+        }
+        
+        try {
+            List<Booking> bookings = bookingDAO.createBatchWithLock(userId, eventIds, quantities);
+            for (Booking booking : bookings) {
+                EventCache.getInstance().ticketsChanged(booking.getEventId(), -booking.getQuantity());
+                HoldExpiry.track(booking.getBookingId());
+            }
+            return bookings;
+        } catch (SQLException e) {
+            throw new Exception("Failed to create batch booking: " + e.getMessage());
+        }
+    }
+    
     public Booking getBookingById(int bookingId) throws SQLException {
         return bookingDAO.getById(bookingId);
     }
     
-    public List<Booking> getUserBookings(int userId) throws SQLException {
-        return bookingDAO.getByUserId(userId);
+    public String streamUserBookings(int userId, PageRequest page, RowCallback<Booking> callback) throws SQLException, IOException {
+        return bookingDAO.streamByUserId(userId, page, callback);
     }
     
-    public List<Booking> getEventBookings(int eventId) throws SQLException {
-        return bookingDAO.getByEventId(eventId);
+    public String streamEventBookings(int eventId, PageRequest page, RowCallback<Booking> callback) throws SQLException, IOException {
+        return bookingDAO.streamByEventId(eventId, page, callback);
     }
     
     public boolean updateBookingStatus(int bookingId, String status) throws Exception {
@@ -0,0 +1,79 @@
+package services;
+
+import dao.BookingDAO;
+import inventory.InventoryEngine;
+import models.Booking;
+import models.Event;
+
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class BookingStrategies {
+    public static final String PESSIMISTIC = "PESSIMISTIC";
+    public static final String MEMORY = InventoryEngine.STRATEGY;
+    public static final String GROUP_COMMIT = "GROUP_COMMIT";
+    public static final String OPTIMISTIC = OptimisticBookingStrategy.NAME;
+    public static final String BUCKETED = BucketedBookingStrategy.NAME;
+    
+    private static final Map<String, BookingStrategy> STRATEGIES = new LinkedHashMap<>();
+    
+    static {
+        BookingDAO bookingDAO = new BookingDAO();
+        
+        register(new BookingStrategy() {
+            @Override
+            public String getName() { return PESSIMISTIC; }
+            
+            @Override
+            public Booking book(int userId, Event event, int quantity) throws SQLException {
+                return bookingDAO.createBookingWithLock(userId, event.getEventId(), quantity);
+            }
+        });
+        
+        register(new BookingStrategy() {
+            @Override
+            public String getName() { return MEMORY; }
+            
+            @Override
+            public Booking book(int userId, Event event, int quantity) throws SQLException {
+                return InventoryEngine.getInstance().reserve(userId, event.getEventId(), quantity);
+            }
+        });
+        
+        register(new BookingStrategy() {
+            @Override
+            public String getName() { return GROUP_COMMIT; }
+            
+            @Override
+            public Booking book(int userId, Event event, int quantity) throws SQLException {
+                return GroupCommitPipeline.getInstance().submit(userId, event.getEventId(), quantity);
+            }
+        });
+        
+        register(new OptimisticBookingStrategy());
+        register(new BucketedBookingStrategy());
+    }
+    
+    private static void register(BookingStrategy strategy) {
+        STRATEGIES.put(strategy.getName(), strategy);
+    }
+    
+    public static BookingStrategy get(String name) {
+        return STRATEGIES.get(name);
+    }
+    
+    public static BookingStrategy forEvent(Event event) {
+        String name = event.getBookingStrategy();
+        BookingStrategy strategy = name != null ? STRATEGIES.get(name) : null;
+        return strategy != null ? strategy : STRATEGIES.get(PESSIMISTIC);
+    }
+    
+    public static boolean isValid(String name) {
+        return STRATEGIES.containsKey(name);
+    }
+    
+    public static String names() {
+        return String.join(", ", STRATEGIES.keySet());
+    }
+}
@@ -0,0 +1,17 @@
+package services;
+
+import models.Booking;
+import models.Event;
+
+import java.sql.SQLException;
+
+/**
+ * How tickets are taken for an event. Selected per event through the
+ * events.booking_strategy column.
+ */
+public interface BookingStrategy {
+    
+    String getName();
+    
+    Booking book(int userId, Event event, int quantity) throws SQLException;
+}
@@ -0,0 +1,81 @@
+package services;
+
+import config.AppConfig;
+import config.DatabaseConfig;
+import dao.BookingDAO;
+import dao.InventoryBucketDAO;
+import models.Booking;
+import models.Event;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * BUCKETED booking strategy: the event's tickets live in N rows of
+ * event_inventory_buckets. A booking decrements one bucket picked at random
+ * (or round-robin) and moves on to the next bucket when that one is drained,
+ * so concurrent bookings mostly lock different rows.
+ */
+public class BucketedBookingStrategy implements BookingStrategy {
+    public static final String NAME = "BUCKETED";
+
+    private final BookingDAO bookingDAO = new BookingDAO();
+    private final InventoryBucketDAO bucketDAO = new InventoryBucketDAO();
+    private final boolean roundRobin = "round_robin".equalsIgnoreCase(AppConfig.get("BUCKET_SELECTION", "random"));
+    private final AtomicInteger nextBucket = new AtomicInteger();
+
+    // For new splits; events keep the count they were split with
+    public static int defaultBucketCount() {
+        return AppConfig.getInt("BUCKET_COUNT", 16);
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public Booking book(int userId, Event event, int quantity) throws SQLException {
+        int eventId = event.getEventId();
+        // The rows the event was split into, which BUCKET_COUNT may no longer match
+        int buckets = event.getBucketCount();
+        int start = buckets == 0 ? 0 : roundRobin
+                ? Math.floorMod(nextBucket.getAndIncrement(), buckets)
+                : ThreadLocalRandom.current().nextInt(buckets);
+
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                boolean taken = false;
+                for (int i = 0; i < buckets && !taken; i++) {
+                    taken = bucketDAO.tryDecrement(conn, eventId, (start + i) % buckets, quantity);
+                    if (!taken) {
+                        // A failed UPDATE still holds the row lock under REPEATABLE READ;
+                        // release it before trying the next bucket so bookers never deadlock
+                        conn.rollback();
+                    }
+                }
+                if (!taken) {
+                    // No single bucket is big enough (or the event is not active)
+                    bucketDAO.takeAcrossBuckets(conn, eventId, quantity);
+                }
+
+                BigDecimal totalPrice = event.getTicketPrice().multiply(new BigDecimal(quantity));
+                Booking booking = new Booking(userId, eventId, BookingDAO.generateBookingCode(), quantity, totalPrice);
+                bookingDAO.insertBookings(conn, Collections.singletonList(booking));
+
+                conn.commit();
+                return booking;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+}
@@ -1,31 +1,60 @@
 package services;
 
+import config.DatabaseConfig;
+import dao.EventCache;
 import dao.EventDAO;
+import dao.InventoryBucketDAO;
+import dao.PageCondition;
+import dao.PageRequest;
+import dao.RowCallback;
+import inventory.InventoryEngine;
 import models.Event;
 
+import java.io.IOException;
+import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.text.SimpleDateFormat;
-import java.util.List;
 
 public class EventService {
     private EventDAO eventDAO;
+    private InventoryBucketDAO bucketDAO;
     
     public EventService() {
         this.eventDAO = new EventDAO();
+        this.bucketDAO = new InventoryBucketDAO();
     }
     
-    public List<Event> getAllEvents() throws SQLException {
-        return eventDAO.getAll();
+    public String streamAllEvents(PageRequest page, RowCallback<Event> callback) throws SQLException, IOException {
+        return streamAllEvents(page, null, callback);
+    }
+    
+    // condition sees the page versions with live availability applied, as the rows will be
+    public String streamAllEvents(PageRequest page, PageCondition<Event> condition,
+                                  RowCallback<Event> callback) throws SQLException, IOException {
+        PageCondition<Event> live = condition == null ? null : versions -> {
+            for (Event event : versions) {
+                applyLiveAvailability(event);
+            }
+            return condition.test(versions);
+        };
+        return eventDAO.streamAll(page, live, event -> {
+            applyLiveAvailability(event);
+            callback.handle(event);
+        });
     }
     
     public Event getEventById(int eventId) throws SQLException {
-        return eventDAO.getById(eventId);
+        Event event = EventCache.getInstance().get(eventId);
+        if (event != null) {
+            applyLiveAvailability(event);
+        }
+        return event;
     }
     
     public Event createEvent(int organizerId, String eventName, String description,
                             String eventDate, String location, int totalCapacity, 
-                            double ticketPrice) throws Exception {
+                            double ticketPrice, String bookingStrategy) throws Exception {
         
         if (eventName == null || eventName.trim().isEmpty()) {
             throw new IllegalArgumentException("Event name is required");
@@ -39,6 +68,10 @@ public class EventService {
         if (ticketPrice < 0) {
             throw new IllegalArgumentException("Ticket price cannot be negative");
         }
+        if (bookingStrategy == null) {
+            bookingStrategy = BookingStrategies.PESSIMISTIC;
+        }
+        validateBookingStrategy(bookingStrategy);
         
         try {
             Event event = new Event();
@@ -55,18 +88,92 @@ public class EventService {
             event.setAvailableTickets(totalCapacity);
             event.setTicketPrice(new java.math.BigDecimal(ticketPrice));
             event.setStatus("ACTIVE");
+            event.setBookingStrategy(bookingStrategy);
             
-            return eventDAO.create(event);
+            Event created = eventDAO.create(event);
+            if (BookingStrategies.BUCKETED.equals(bookingStrategy)) {
+                bucketDAO.split(created.getEventId(), BucketedBookingStrategy.defaultBucketCount());
+            }
+            return created;
         } catch (Exception e) {
             throw new Exception("Failed to create event: " + e.getMessage());
         }
     }
     
     public boolean updateEvent(Event event) throws SQLException {
-        return eventDAO.update(event);
+        if (event.getBookingStrategy() == null) {
+            boolean updated = eventDAO.update(event);
+            if (updated) {
+                InventoryEngine.onEventChanged(event.getEventId());
+            }
+            return updated;
+        }
+        
+        validateBookingStrategy(event.getBookingStrategy());
+        boolean[] updated = new boolean[1];
+        // A MEMORY counter is ahead of the table until its writes drain, so
+        // drain it first and hold its reservations back while tickets move
+        InventoryEngine.runExclusive(event.getEventId(), () -> updated[0] = updateWithStrategy(event));
+        EventCache.getInstance().invalidate(event.getEventId());
+        return updated[0];
+    }
+    
+    // The new strategy and the move of the tickets commit together, under the
+    // event row lock, so no booking sees one without the other
+    private boolean updateWithStrategy(Event event) throws SQLException {
+        int eventId = event.getEventId();
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                String previous = eventDAO.lockBookingStrategy(conn, eventId);
+                if (previous == null) {
+                    conn.rollback();
+                    return false;
+                }
+                eventDAO.update(conn, event);
+                moveBuckets(conn, eventId, previous, event.getBookingStrategy());
+                conn.commit();
+                return true;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
     }
     
     public boolean deleteEvent(int eventId) throws SQLException {
-        return eventDAO.delete(eventId);
+        boolean deleted = eventDAO.delete(eventId);
+        if (deleted) {
+            InventoryEngine.onEventChanged(eventId);
+        }
+        return deleted;
+    }
+    
+    // Tickets live in event_inventory_buckets only while an event is BUCKETED
+    private void moveBuckets(Connection conn, int eventId, String from, String to) throws SQLException {
+        if (to == null || to.equals(from)) {
+            return;
+        }
+        if (BookingStrategies.BUCKETED.equals(to)) {
+            bucketDAO.split(conn, eventId, BucketedBookingStrategy.defaultBucketCount());
+        } else if (BookingStrategies.BUCKETED.equals(from)) {
+            bucketDAO.merge(conn, eventId);
+        }
+    }
+    
+    // MEMORY events are ahead of the table until the write-behind catches up
+    private void applyLiveAvailability(Event event) {
+        int live = InventoryEngine.liveAvailable(event.getEventId());
+        if (live >= 0) {
+            event.setAvailableTickets(live);
+        }
+    }
+    
+    private void validateBookingStrategy(String bookingStrategy) {
+        if (!BookingStrategies.isValid(bookingStrategy)) {
+            throw new IllegalArgumentException("Invalid booking strategy. Must be one of: " + BookingStrategies.names());
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,166 @@
+package services;
+
+import config.AppConfig;
+import config.DatabaseConfig;
+import dao.BookingDAO;
+import models.Booking;
+import models.Event;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Group commit for the GROUP_COMMIT booking strategy.
+ *
+ * Concurrent bookings for the same event are collected for up to
+ * GROUP_COMMIT_WINDOW_MS or GROUP_COMMIT_MAX_BATCH requests. The first request
+ * of a batch acts as leader: it waits for the window to close and then runs the
+ * whole batch in one transaction (one FOR UPDATE, one multi-row INSERT, one
+ * UPDATE). The other callers just wait for their own result.
+ */
+public class GroupCommitPipeline {
+    private static final GroupCommitPipeline INSTANCE = new GroupCommitPipeline();
+
+    private final BookingDAO bookingDAO = new BookingDAO();
+    private final Map<Integer, EventQueue> queues = new ConcurrentHashMap<>();
+    private final long windowNanos;
+    private final int maxBatch;
+
+    public static GroupCommitPipeline getInstance() {
+        return INSTANCE;
+    }
+
+    private GroupCommitPipeline() {
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(AppConfig.getLong("GROUP_COMMIT_WINDOW_MS", 2));
+        this.maxBatch = AppConfig.getInt("GROUP_COMMIT_MAX_BATCH", 100);
+    }
+
+    public Booking submit(int userId, int eventId, int quantity) throws SQLException {
+        EventQueue queue = queues.computeIfAbsent(eventId, id -> new EventQueue());
+        Request request = new Request(userId, quantity);
+
+        boolean leader;
+        synchronized (queue) {
+            leader = queue.open == null;
+            if (leader) {
+                queue.open = new ArrayList<>();
+            }
+            queue.open.add(request);
+            if (queue.open.size() >= maxBatch) {
+                queue.notifyAll();
+            }
+        }
+
+        if (leader) {
+            execute(eventId, queue.close(windowNanos, maxBatch));
+        }
+
+        try {
+            return request.result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for booking batch", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            throw new SQLException(cause.getMessage(), cause);
+        }
+    }
+
+    private void execute(int eventId, List<Request> batch) {
+        List<Request> accepted = new ArrayList<>(batch.size());
+
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                Event event = bookingDAO.lockEvent(conn, eventId);
+                if (event == null) {
+                    throw new SQLException("Event not found");
+                }
+                if (!"ACTIVE".equals(event.getStatus())) {
+                    throw new SQLException("Event is not active");
+                }
+
+                // First come, first served inside the batch
+                int remaining = event.getAvailableTickets();
+                List<Booking> bookings = new ArrayList<>(batch.size());
+                for (Request request : batch) {
+                    if (request.quantity > remaining) {
+                        request.result.completeExceptionally(
+                            new SQLException("Insufficient tickets. Available: " + remaining));
+                        continue;
+                    }
+                    remaining -= request.quantity;
+                    BigDecimal totalPrice = event.getTicketPrice().multiply(new BigDecimal(request.quantity));
+                    request.booking = new Booking(request.userId, eventId, BookingDAO.generateBookingCode(),
+                                                  request.quantity, totalPrice);
+                    bookings.add(request.booking);
+                    accepted.add(request);
+                }
+
+                if (!bookings.isEmpty()) {
+                    bookingDAO.insertBookings(conn, bookings);
+                    bookingDAO.decrementAvailableTickets(conn, eventId, event.getAvailableTickets() - remaining);
+                }
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (Throwable e) {
+            for (Request request : batch) {
+                request.result.completeExceptionally(e);
+            }
+            return;
+        }
+
+        for (Request request : accepted) {
+            request.result.complete(request.booking);
+        }
+    }
+
+    private static class EventQueue {
+        private List<Request> open;
+
+        // Waits for the window to pass or the batch to fill, then detaches it
+        synchronized List<Request> close(long windowNanos, int maxBatch) {
+            long deadline = System.nanoTime() + windowNanos;
+            long remaining;
+            while (open.size() < maxBatch && (remaining = deadline - System.nanoTime()) > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            List<Request> batch = open;
+            open = null;
+            return batch;
+        }
+    }
+
+    private static class Request {
+        final int userId;
+        final int quantity;
+        final CompletableFuture<Booking> result = new CompletableFuture<>();
+        Booking booking;
+
+        Request(int userId, int quantity) {
+            this.userId = userId;
+            this.quantity = quantity;
+        }
+    }
+}
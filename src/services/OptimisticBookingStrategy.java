@@ -0,0 +1,86 @@
+package services;
+
+import config.AppConfig;
+import dao.BookingDAO;
+import dao.EventDAO;
+import metrics.Metrics;
+import models.Booking;
+import models.Event;
+
+import java.sql.SQLException;
+import java.sql.SQLTransactionRollbackException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * OPTIMISTIC booking strategy: a single guarded UPDATE on events instead of
+ * SELECT ... FOR UPDATE. Conflicts (price changed under us, deadlock or lock
+ * wait timeout) are retried a bounded number of times with jittered backoff.
+ */
+public class OptimisticBookingStrategy implements BookingStrategy {
+    public static final String NAME = "OPTIMISTIC";
+
+    private static final LongAdder ATTEMPTS = Metrics.counter("booking_optimistic_attempts_total",
+            "Guarded UPDATEs tried by the OPTIMISTIC strategy, retries included.", "");
+    private static final LongAdder SUCCESSES = Metrics.counter("booking_optimistic_successes_total",
+            "OPTIMISTIC attempts that booked.", "");
+    private static final LongAdder CONFLICTS = Metrics.counter("booking_optimistic_conflicts_total",
+            "OPTIMISTIC attempts that conflicted (price changed since read, deadlock or lock wait timeout).", "");
+    private static final LongAdder EXHAUSTED = Metrics.counter("booking_optimistic_exhausted_total",
+            "OPTIMISTIC bookings that gave up after OPTIMISTIC_MAX_RETRIES conflicts.", "");
+
+    private final BookingDAO bookingDAO = new BookingDAO();
+    private final EventDAO eventDAO = new EventDAO();
+    private final int maxRetries = AppConfig.getInt("OPTIMISTIC_MAX_RETRIES", 5);
+    private final long backoffMs = AppConfig.getLong("OPTIMISTIC_BACKOFF_MS", 2);
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public Booking book(int userId, Event event, int quantity) throws SQLException {
+        for (int attempt = 0; ; attempt++) {
+            ATTEMPTS.increment();
+            try {
+                Booking booking = bookingDAO.createBookingConditional(userId, event.getEventId(), quantity,
+                                                                      event.getTicketPrice());
+                if (booking != null) {
+                    SUCCESSES.increment();
+                    return booking;
+                }
+            } catch (SQLTransactionRollbackException e) {
+                // Deadlock or lock wait timeout, treat like any other conflict
+            }
+
+            CONFLICTS.increment();
+            if (attempt >= maxRetries) {
+                EXHAUSTED.increment();
+                throw new SQLException("Booking conflicted " + (attempt + 1) + " times, please retry");
+            }
+            sleepWithJitter(attempt);
+
+            event = eventDAO.getById(event.getEventId());
+            if (event == null) {
+                throw new SQLException("Event not found");
+            }
+        }
+    }
+
+    // Full jitter: random delay in [0, backoff * 2^attempt)
+    private void sleepWithJitter(int attempt) throws SQLException {
+        long ceiling = Math.max(1, backoffMs << Math.min(attempt, 10));
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while retrying booking", e);
+        }
+    }
+
+    public static String getStats() {
+        return "attempts=" + ATTEMPTS.sum() + " successes=" + SUCCESSES.sum() +
+               " conflicts=" + CONFLICTS.sum() + " exhausted=" + EXHAUSTED.sum();
+    }
+}
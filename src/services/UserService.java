@@ -1,10 +1,14 @@
 package services;
 
+import dao.PageCondition;
+import dao.PageRequest;
+import dao.RowCallback;
 import dao.UserDAO;
 import models.User;
 
+import java.io.IOException;
 import java.sql.SQLException;
-import java.util.List;
+import java.sql.Timestamp;
 
 public class UserService {
     private UserDAO userDAO;
@@ -13,14 +17,24 @@ public class UserService {
         this.userDAO = new UserDAO();
     }
     
-    public List<User> getAllUsers() throws SQLException {
-        return userDAO.getAll();
+    public String streamAllUsers(PageRequest page, RowCallback<User> callback) throws SQLException, IOException {
+        return userDAO.streamAll(page, callback);
+    }
+    
+    public String streamAllUsers(PageRequest page, PageCondition<User> condition,
+                                 RowCallback<User> callback) throws SQLException, IOException {
+        return userDAO.streamAll(page, condition, callback);
     }
     
     public User getUserById(int userId) throws SQLException {
         return userDAO.getById(userId);
     }
     
+    // null if the user does not exist
+    public Timestamp getUserUpdatedAt(int userId) throws SQLException {
+        return userDAO.getUpdatedAt(userId);
+    }
+    
     public User createUser(String username, String email, String password,
                           String fullName, String phone, String role) throws Exception {
         